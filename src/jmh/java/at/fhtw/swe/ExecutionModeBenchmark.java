@@ -0,0 +1,118 @@
+package at.fhtw.swe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * A load test of the running application: 64 concurrent clients post the grid test form to {@code /external} or
+ * to {@code /async/external}, optionally pausing halfway through the upload like a slow client. The admission and
+ * compute queues are large enough that every request waits instead of being rejected, so the modes differ only in
+ * where the requests wait.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(64)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    @Param({"blocking", "async"})
+    private String mode;
+
+    @Param({"0", "50"})
+    private int uploadPauseMillis;
+
+    private ConfigurableApplicationContext context;
+    private URL url;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = SpringApplication.run(SweApplication.class,
+                "--server.port=0",
+                "--validator.warm-up.enabled=false",
+                "--validator.admission.queue-depth=1024",
+                "--validator.admission.queue-timeout-ms=60000",
+                "--validator.async.queue-capacity=1024",
+                "--logging.level.root=WARN");
+        final String port = context.getEnvironment().getProperty("local.server.port");
+        url = new URL("http://localhost:" + port + ("async".equals(mode) ? "/async/external" : "/external"));
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ObjectNode request = objectMapper.createObjectNode()
+                .put("template", resource("/forms/gridForm.json"))
+                .put("data", resource("/forms/gridData.json"));
+        body = objectMapper.writeValueAsBytes(request);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int validate() throws IOException, InterruptedException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(body.length / 2 + 1);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body, 0, body.length / 2);
+            output.flush();
+            if (uploadPauseMillis > 0) {
+                Thread.sleep(uploadPauseMillis);
+            }
+            output.write(body, body.length / 2, body.length - body.length / 2);
+        }
+
+        final int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IllegalStateException("Validation answered " + status);
+        }
+        try (InputStream input = connection.getInputStream()) {
+            final byte[] buffer = new byte[4096];
+            while (input.read(buffer) >= 0) {
+                // drain the response, so the connection can be reused
+            }
+        }
+        return status;
+    }
+
+    private static String resource(final String name) {
+        try (InputStream stream = ExecutionModeBenchmark.class.getResourceAsStream(name);
+             Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package at.fhtw.swe.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The jsonata runtime on its own: converting the data for an engine and evaluating one cached expression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonataEngineBenchmark {
+
+    private static final String EXPRESSION = "$not($boolean(rows[$rownum].cellA) and $boolean(rows[$rownum].cellB))";
+
+    @Param({"script", "native"})
+    private String engine;
+
+    @Param({"10", "1000"})
+    private int width;
+
+    @Param({"0", "1000"})
+    private int gridRows;
+
+    private JsonataEngine jsonataEngine;
+    private String data;
+    private JsonataData parsedData;
+
+    @Setup
+    public void setUp() {
+        jsonataEngine = new JsonataEngine(engine, 1, 5000, 512, 0, 0, 0);
+        data = SyntheticForms.data(width, gridRows);
+        parsedData = jsonataEngine.parseData(data);
+    }
+
+    @Benchmark
+    public String parseData() {
+        // a fresh JsonataData parses the text again on its first evaluation
+        return jsonataEngine.validate(jsonataEngine.parseData(data), "true", null);
+    }
+
+    @Benchmark
+    public String validate() {
+        return jsonataEngine.validate(parsedData, EXPRESSION, gridRows / 2);
+    }
+}
@@ -0,0 +1,70 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.model.ValidationRules;
+import at.fhtw.swe.model.ValidationValue;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The native rules of one text field, the innermost loop of every validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleValueValidatorBenchmark {
+
+    @Param({"valid", "invalid"})
+    private String value;
+
+    private final SingleValueValidator singleValueValidator = new SingleValueValidator();
+    private ValidationValue validationValue;
+    private final Set<ValidationError> errors = new HashSet<>();
+
+    @Setup
+    public void setUp() {
+        validationValue = new ValidationValue();
+        validationValue.setKey("field");
+        validationValue.setType("textfield");
+        validationValue.setValue(new TextNode("valid".equals(value) ? "a valid value" : "X"));
+        validationValue.setRules(ValidationRules.builder()
+                .required(true)
+                .minLength(2)
+                .maxLength(64)
+                .pattern(new PatternCache(16, 100).get("[a-z0-9 ]+"))
+                .build());
+    }
+
+    @Benchmark
+    public Set<ValidationError> validateSingleValue() {
+        return singleValueValidator.validateSingleValue(validationValue);
+    }
+
+    /**
+     * The way the validator calls it, adding to the errors of the whole request.
+     */
+    @Benchmark
+    public Set<ValidationError> validateIntoErrors() {
+        errors.clear();
+        singleValueValidator.validateSingleValue(validationValue, errors);
+        return errors;
+    }
+}
@@ -0,0 +1,80 @@
+package at.fhtw.swe.service;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Generates templates and matching data of a given shape: {@code width} top level text fields, a grid of
+ * {@code gridRows} rows and a share of {@code jsonataDensity} of the components carrying a jsonata rule.
+ */
+final class SyntheticForms {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private SyntheticForms() {
+    }
+
+    static String template(final int width, final int gridRows, final double jsonataDensity) {
+        final ObjectNode template = NODES.objectNode();
+        final ArrayNode components = template.putArray("components");
+
+        for (int i = 0; i < width; i++) {
+            final String id = "field" + i;
+            final ObjectNode validate = textfield(components, id);
+            if (hasJsonata(i, jsonataDensity)) {
+                validate.put("custom", "$length(" + id + ") > 64");
+            }
+        }
+
+        if (gridRows > 0) {
+            final ObjectNode grid = components.addObject();
+            grid.put("id", "rows");
+            grid.put("type", "grid");
+            grid.putObject("validate").put("minLength", 1);
+            final ArrayNode cells = grid.putArray("components");
+            textfield(cells, "cellA");
+            final ObjectNode validate = textfield(cells, "cellB");
+            if (jsonataDensity > 0) {
+                validate.put("custom",
+                        "$not($boolean(rows[@eval:rownum@].cellA) and $boolean(rows[@eval:rownum@].cellB))");
+            }
+        }
+
+        return template.toString();
+    }
+
+    static String data(final int width, final int gridRows) {
+        final ObjectNode data = NODES.objectNode();
+        for (int i = 0; i < width; i++) {
+            data.put("field" + i, "value " + i);
+        }
+        if (gridRows > 0) {
+            final ArrayNode rows = data.putArray("rows");
+            for (int row = 0; row < gridRows; row++) {
+                // every tenth row lacks a cell, so the grid rules report violations as well
+                final ObjectNode cells = rows.addObject().put("cellA", "a" + row);
+                if (row % 10 != 0) {
+                    cells.put("cellB", "b" + row);
+                }
+            }
+        }
+        return data.toString();
+    }
+
+    private static ObjectNode textfield(final ArrayNode components, final String id) {
+        final ObjectNode component = components.addObject();
+        component.put("id", id);
+        component.put("type", "textfield");
+        final ObjectNode validate = component.putObject("validate");
+        validate.put("required", true);
+        validate.put("minLength", 2);
+        validate.put("maxLength", 64);
+        validate.put("pattern", "[a-z0-9 ]+");
+        return validate;
+    }
+
+    private static boolean hasJsonata(final int index, final double jsonataDensity) {
+        return Math.floor((index + 1) * jsonataDensity) > Math.floor(index * jsonataDensity);
+    }
+}
@@ -0,0 +1,68 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ValidationError;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole form validation, from the data text to the set of errors, with the template already compiled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    @Param({"script", "native"})
+    private String engine;
+
+    @Param({"10", "100", "1000"})
+    private int width;
+
+    @Param({"0", "1000", "50000"})
+    private int gridRows;
+
+    @Param({"0", "0.1", "1"})
+    private double jsonataDensity;
+
+    private Validator validator;
+    private CompiledForm form;
+    private String data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final JsonataEngine jsonataEngine = new JsonataEngine(engine, 0, 5000, 512, 0, 0, 0);
+        final TemplateCache templateCache = new TemplateCache(256, Long.MAX_VALUE, new PatternCache(1024, 100));
+        validator = new Validator(jsonataEngine, templateCache, ValidationMetrics.disabled(), false, 0, 64, 256, 0);
+        form = templateCache.get(SyntheticForms.template(width, gridRows, jsonataDensity));
+        data = SyntheticForms.data(width, gridRows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validator.shutdown();
+    }
+
+    @Benchmark
+    public Set<ValidationError> validateForm() {
+        return validator.validateForm(form, data, false);
+    }
+}
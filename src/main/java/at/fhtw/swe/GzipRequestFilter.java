@@ -0,0 +1,175 @@
+package at.fhtw.swe;
+
+import at.fhtw.swe.service.AdmissionRejectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip}. A body inflating to more than
+ * {@code validator.admission.max-inflated-bytes} is rejected as too large while it is read, so a small compressed
+ * request cannot fill the heap; batches stream their documents and are inflated without a limit, as
+ * {@link RequestSizeFilter} does not limit them either. Inflated bodies can only be read blocking, as all endpoints do; non-blocking
+ * readers are told so through their {@link ReadListener}. Responses are compressed by the server, see
+ * {@code server.compression.*}.
+ */
+@Component
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    private static final String GZIP = "gzip";
+    private static final String BATCH = "/batch/";
+
+    private final transient long maxInflatedBytes;
+
+    public GzipRequestFilter(
+            @Value("${validator.admission.max-inflated-bytes:134217728}") final long maxInflatedBytes) {
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain)
+            throws ServletException, IOException {
+        if (GZIP.equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            final boolean batch = request.getRequestURI().startsWith(request.getContextPath() + BATCH);
+            chain.doFilter(new InflatingRequest(request, batch ? Long.MAX_VALUE : maxInflatedBytes), response);
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private static final class InflatingRequest extends HttpServletRequestWrapper {
+        private final long maxInflatedBytes;
+        private ServletInputStream input;
+
+        private InflatingRequest(final HttpServletRequest request, final long maxInflatedBytes) {
+            super(request);
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = new InflatingInputStream(new GZIPInputStream(super.getInputStream()), maxInflatedBytes);
+            }
+            return input;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            final Charset charset = getCharacterEncoding() != null
+                    ? Charset.forName(getCharacterEncoding())
+                    : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(final String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return null;
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(final String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return Collections.emptyEnumeration();
+            }
+            return super.getHeaders(name);
+        }
+    }
+
+    private static final class InflatingInputStream extends ServletInputStream {
+        private final InputStream inflater;
+        private final long maxInflatedBytes;
+        private long inflated;
+        private boolean finished;
+
+        private InflatingInputStream(final InputStream inflater, final long maxInflatedBytes) {
+            this.inflater = inflater;
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = inflater.read();
+            count(value < 0 ? -1 : 1);
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = inflater.read(buffer, offset, length);
+            count(read);
+            return read;
+        }
+
+        private void count(final int read) {
+            if (read < 0) {
+                finished = true;
+                return;
+            }
+            inflated += read;
+            if (inflated > maxInflatedBytes) {
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.TOO_LARGE,
+                        "Request bodies are limited to " + maxInflatedBytes + " bytes inflated");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        /**
+         * The inflater may read from the request several times for one call, which a non-blocking read must not do.
+         * A non-blocking reader gets an error through its listener instead of data.
+         */
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            readListener.onError(new IOException("Request bodies sent with Content-Encoding: gzip can only be read "
+                    + "blocking"));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package at.fhtw.swe;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+
+/**
+ * A template or form data in a request, either as a JSON document embedded in a string, the original format, or as
+ * the document itself, which is read into a tree right away instead of being encoded and parsed twice. The length is
+ * that of the text, or the number of characters or bytes the document took in the request.
+ */
+@JsonDeserialize(using = JsonPayload.Deserializer.class)
+public final class JsonPayload {
+    private final String text;
+    private final JsonNode tree;
+    private final long length;
+
+    private JsonPayload(final String text, final JsonNode tree, final long length) {
+        this.text = text;
+        this.tree = tree;
+        this.length = length;
+    }
+
+    public static JsonPayload of(final String text) {
+        return text == null ? null : new JsonPayload(text, null, text.length());
+    }
+
+    public static JsonPayload of(final JsonNode tree, final long length) {
+        return new JsonPayload(null, tree, length);
+    }
+
+    public boolean isText() {
+        return text != null;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public JsonNode getTree() {
+        return tree;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    static final class Deserializer extends JsonDeserializer<JsonPayload> {
+
+        @Override
+        public JsonPayload deserialize(final JsonParser parser, final DeserializationContext context)
+                throws IOException {
+            if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                return of(parser.getText());
+            }
+            final long start = offset(parser.getTokenLocation());
+            final JsonNode tree = parser.readValueAsTree();
+            final long end = offset(parser.getCurrentLocation());
+            return of(tree, start < 0 || end < 0 ? 0 : end - start);
+        }
+
+        private static long offset(final JsonLocation location) {
+            return location.getCharOffset() >= 0 ? location.getCharOffset() : location.getByteOffset();
+        }
+    }
+}
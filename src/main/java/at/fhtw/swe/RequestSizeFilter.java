@@ -0,0 +1,149 @@
+package at.fhtw.swe;
+
+import at.fhtw.swe.service.AdmissionControl;
+import at.fhtw.swe.service.AdmissionRejectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Rejects request bodies over {@code validator.admission.max-request-bytes} before they are read, so an oversized
+ * request does not take the heap the limits of {@link AdmissionControl} are meant to protect: by their
+ * {@code Content-Length} right away, and bodies of unknown length, as chunked ones, while they are read. The batch
+ * endpoints are left out, they stream bodies of any length. The limits of templates and data are checked after
+ * reading, they are finer than that of the whole body.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RequestSizeFilter extends OncePerRequestFilter {
+
+    private static final String BATCH = "/batch/";
+
+    private final transient AdmissionControl admissionControl;
+    private final transient long maxRequestBytes;
+
+    public RequestSizeFilter(
+            final AdmissionControl admissionControl,
+            @Value("${validator.admission.max-request-bytes:134217728}") final long maxRequestBytes) {
+        this.admissionControl = admissionControl;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + BATCH);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain)
+            throws ServletException, IOException {
+        final long length = request.getContentLengthLong();
+        if (length > maxRequestBytes) {
+            final AdmissionRejectedException rejection = admissionControl.rejectTooLarge(message());
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(rejection.getMessage());
+            return;
+        }
+        chain.doFilter(length < 0 ? new CountingRequest(request) : request, response);
+    }
+
+    private String message() {
+        return "Request bodies are limited to " + maxRequestBytes + " bytes";
+    }
+
+    private final class CountingRequest extends HttpServletRequestWrapper {
+        private ServletInputStream input;
+
+        private CountingRequest(final HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = new CountingInputStream(super.getInputStream());
+            }
+            return input;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            final Charset charset = getCharacterEncoding() != null
+                    ? Charset.forName(getCharacterEncoding())
+                    : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    private final class CountingInputStream extends ServletInputStream {
+        private final ServletInputStream input;
+        private long read;
+
+        private CountingInputStream(final ServletInputStream input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = input.read();
+            count(value < 0 ? -1 : 1);
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int count = input.read(buffer, offset, length);
+            count(count);
+            return count;
+        }
+
+        private void count(final int count) {
+            if (count > 0) {
+                read += count;
+                if (read > maxRequestBytes) {
+                    throw admissionControl.rejectTooLarge(message());
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return input.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return input.isReady();
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            input.setReadListener(readListener);
+        }
+    }
+}
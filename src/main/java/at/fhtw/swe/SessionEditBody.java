@@ -0,0 +1,26 @@
+package at.fhtw.swe;
+
+import at.fhtw.swe.model.FieldChange;
+
+import java.util.List;
+
+public class SessionEditBody {
+    private String templateHash;
+    private List<FieldChange> changes;
+
+    public String getTemplateHash() {
+        return templateHash;
+    }
+
+    public void setTemplateHash(final String templateHash) {
+        this.templateHash = templateHash;
+    }
+
+    public List<FieldChange> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(final List<FieldChange> changes) {
+        this.changes = changes;
+    }
+}
@@ -1,39 +1,489 @@
 package at.fhtw.swe;
 
+import at.fhtw.swe.model.AdmissionStatistics;
+import at.fhtw.swe.model.CacheStatistics;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ErrorGroup;
+import at.fhtw.swe.model.LoadStatistics;
+import at.fhtw.swe.model.PoolStatistics;
+import at.fhtw.swe.model.RegisteredTemplate;
+import at.fhtw.swe.model.SessionState;
+import at.fhtw.swe.model.TemplateReference;
+import at.fhtw.swe.model.ValidationDelta;
 import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.service.AdmissionControl;
+import at.fhtw.swe.service.AdmissionRejectedException;
+import at.fhtw.swe.service.BatchValidator;
+import at.fhtw.swe.service.ComputePool;
+import at.fhtw.swe.service.EngineUnavailableException;
+import at.fhtw.swe.service.ErrorGroups;
+import at.fhtw.swe.service.IncrementalValidator;
+import at.fhtw.swe.service.JsonataEngine;
+import at.fhtw.swe.service.LoadMonitor;
+import at.fhtw.swe.service.PatternCache;
+import at.fhtw.swe.service.ResultCache;
+import at.fhtw.swe.service.SessionException;
+import at.fhtw.swe.service.StreamingValidator;
+import at.fhtw.swe.service.TemplateCache;
+import at.fhtw.swe.service.TemplateException;
+import at.fhtw.swe.service.TemplateRegistry;
 import at.fhtw.swe.service.Validator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletRequest;
 
 @RestController
 public class ValidationController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final transient Validator validator;
+    private final transient TemplateCache templateCache;
+    private final transient TemplateRegistry templateRegistry;
+    private final transient JsonataEngine jsonataEngine;
+    private final transient PatternCache patternCache;
+    private final transient StreamingValidator streamingValidator;
+    private final transient BatchValidator batchValidator;
+    private final transient LoadMonitor loadMonitor;
+    private final transient AdmissionControl admissionControl;
+    private final transient ComputePool computePool;
+    private final transient IncrementalValidator incrementalValidator;
+    private final transient ResultCache resultCache;
+    private final transient ValidationRequestReader requestReader;
+    private final transient int streamingThreshold;
+    private final transient long retryAfterSeconds;
 
-    public ValidationController(final Validator validator) {
+    public ValidationController(
+            final Validator validator,
+            final TemplateCache templateCache,
+            final TemplateRegistry templateRegistry,
+            final JsonataEngine jsonataEngine,
+            final PatternCache patternCache,
+            final StreamingValidator streamingValidator,
+            final BatchValidator batchValidator,
+            final LoadMonitor loadMonitor,
+            final AdmissionControl admissionControl,
+            final ComputePool computePool,
+            final IncrementalValidator incrementalValidator,
+            final ResultCache resultCache,
+            final ValidationRequestReader requestReader,
+            @Value("${validator.streaming.threshold-chars:1048576}") final int streamingThreshold,
+            @Value("${validator.admission.retry-after-seconds:1}") final long retryAfterSeconds) {
         this.validator = validator;
+        this.templateCache = templateCache;
+        this.templateRegistry = templateRegistry;
+        this.jsonataEngine = jsonataEngine;
+        this.patternCache = patternCache;
+        this.streamingValidator = streamingValidator;
+        this.batchValidator = batchValidator;
+        this.loadMonitor = loadMonitor;
+        this.admissionControl = admissionControl;
+        this.computePool = computePool;
+        this.incrementalValidator = incrementalValidator;
+        this.resultCache = resultCache;
+        this.requestReader = requestReader;
+        this.streamingThreshold = streamingThreshold;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 
+    /**
+     * Readiness as a plain flag, for load balancers configured before liveness and readiness were split.
+     */
     @GetMapping("/healthCheck")
     public ResponseEntity<Boolean> getHealthCheck(){
+        final boolean ready = loadMonitor.getStatistics().isReady();
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(ready);
+    }
+
+    @GetMapping("/healthCheck/liveness")
+    public ResponseEntity<Boolean> getLiveness() {
         return ResponseEntity.ok(true);
     }
 
+    @GetMapping("/healthCheck/readiness")
+    public ResponseEntity<LoadStatistics> getReadiness() {
+        final LoadStatistics statistics = loadMonitor.getStatistics();
+        return ResponseEntity.status(statistics.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(statistics);
+    }
+
+    @GetMapping("/statistics/templateCache")
+    public ResponseEntity<CacheStatistics> getTemplateCacheStatistics() {
+        return ResponseEntity.ok(templateCache.getStatistics());
+    }
+
+    @GetMapping("/statistics/patternCache")
+    public ResponseEntity<CacheStatistics> getPatternCacheStatistics() {
+        return ResponseEntity.ok(patternCache.getStatistics());
+    }
+
+    @GetMapping("/statistics/resultCache")
+    public ResponseEntity<CacheStatistics> getResultCacheStatistics() {
+        return ResponseEntity.ok(resultCache.getStatistics());
+    }
+
+    @GetMapping("/statistics/jsonataPool")
+    public ResponseEntity<PoolStatistics> getJsonataPoolStatistics() {
+        return ResponseEntity.ok(jsonataEngine.getStatistics());
+    }
+
+    @GetMapping("/statistics/admission")
+    public ResponseEntity<AdmissionStatistics> getAdmissionStatistics() {
+        return ResponseEntity.ok(admissionControl.getStatistics());
+    }
+
+    @GetMapping("/statistics/jsonataExpressions")
+    public ResponseEntity<CacheStatistics> getJsonataExpressionStatistics() {
+        return ResponseEntity.ok(jsonataEngine.getExpressionStatistics());
+    }
+
+    /**
+     * Compiles a template ahead of the validations, which can then reference it by the hash answered instead of
+     * sending it again, for as long as it stays in the template cache.
+     */
+    @PostMapping("/templates")
+    public ResponseEntity<TemplateReference> postTemplate(final @RequestBody() JsonPayload template) {
+        admissionControl.acquire(template.getLength(), 0);
+        try {
+            return ResponseEntity.ok(new TemplateReference(templateCache.get(text(template)).getHash()));
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    /**
+     * Registers a template as the next version of the id, after compiling it and checking its rules.
+     */
+    @PostMapping("/registry/{id}")
+    public ResponseEntity<RegisteredTemplate> postRegisteredTemplate(
+            final @PathVariable("id") String id, final @RequestBody() JsonPayload template) {
+        admissionControl.acquire(template.getLength(), 0);
+        try {
+            return ResponseEntity.ok(templateRegistry.register(id, text(template)));
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    @GetMapping("/registry")
+    public ResponseEntity<List<RegisteredTemplate>> getRegisteredTemplates() {
+        return ResponseEntity.ok(templateRegistry.list());
+    }
+
+    @GetMapping("/registry/{id}")
+    public ResponseEntity<List<RegisteredTemplate>> getRegisteredTemplate(final @PathVariable("id") String id) {
+        return ResponseEntity.ok(templateRegistry.list(id));
+    }
+
+    @DeleteMapping("/registry/{id}")
+    public ResponseEntity<Void> deleteRegisteredTemplate(final @PathVariable("id") String id) {
+        templateRegistry.delete(id, null);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/registry/{id}/{version}")
+    public ResponseEntity<Void> deleteRegisteredTemplate(
+            final @PathVariable("id") String id, final @PathVariable("version") int version) {
+        templateRegistry.delete(id, version);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Reads the request itself instead of taking a {@code @RequestBody}, so data sent as a document can be validated
+     * while it is read, see {@link #validate(HttpServletRequest, boolean)}.
+     */
     @PostMapping("/internal")
-    public ResponseEntity<Set<ValidationError>> postInternalValidation(final @RequestBody() ValidationRequestBody body) {
-        final Set<ValidationError> validationErrors = this.validator.validateForm(body.getTemplate(), body.getData(), true);
-        return ResponseEntity.ok(validationErrors);
+    public ResponseEntity<Set<ValidationError>> postInternalValidation(final HttpServletRequest request)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        return ResponseEntity.ok(validate(request, true));
     }
 
+    public ResponseEntity<Set<ValidationError>> postInternalValidation(final ValidationRequestBody body) {
+        final Set<ValidationError> validationErrors = validate(body, true);
+        return ResponseEntity.ok(validationErrors);
+    }
 
     @PostMapping("/external")
-    public ResponseEntity<Set<ValidationError>> postExternalValidation(final @RequestBody() ValidationRequestBody body) {
-        final Set<ValidationError> validationErrors = this.validator.validateForm(body.getTemplate(), body.getData(), false);
+    public ResponseEntity<Set<ValidationError>> postExternalValidation(final HttpServletRequest request)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        return ResponseEntity.ok(validate(request, false));
+    }
+
+    public ResponseEntity<Set<ValidationError>> postExternalValidation(final ValidationRequestBody body) {
+        final Set<ValidationError> validationErrors = validate(body, false);
         return ResponseEntity.ok(validationErrors);
     }
+
+    /**
+     * Same as {@code /internal}, but the errors are grouped by key and violation, with the failed grid rows as a
+     * bitset, see {@link ErrorGroup}.
+     */
+    @PostMapping("/grouped/internal")
+    public ResponseEntity<List<ErrorGroup>> postGroupedInternalValidation(final HttpServletRequest request)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        return ResponseEntity.ok(ErrorGroups.of(validate(request, true)));
+    }
+
+    public ResponseEntity<List<ErrorGroup>> postGroupedInternalValidation(final ValidationRequestBody body) {
+        return ResponseEntity.ok(ErrorGroups.of(validate(body, true)));
+    }
+
+    @PostMapping("/grouped/external")
+    public ResponseEntity<List<ErrorGroup>> postGroupedExternalValidation(final HttpServletRequest request)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        return ResponseEntity.ok(ErrorGroups.of(validate(request, false)));
+    }
+
+    public ResponseEntity<List<ErrorGroup>> postGroupedExternalValidation(final ValidationRequestBody body) {
+        return ResponseEntity.ok(ErrorGroups.of(validate(body, false)));
+    }
+
+    /**
+     * Same as {@code /internal}, but the validation runs on the {@link ComputePool} while the request thread is
+     * released.
+     */
+    @PostMapping("/async/internal")
+    public CompletableFuture<ResponseEntity<Set<ValidationError>>> postAsyncInternalValidation(
+            final @RequestBody() ValidationRequestBody body) {
+        return validateAsync(body, true);
+    }
+
+    @PostMapping("/async/external")
+    public CompletableFuture<ResponseEntity<Set<ValidationError>>> postAsyncExternalValidation(
+            final @RequestBody() ValidationRequestBody body) {
+        return validateAsync(body, false);
+    }
+
+    @PostMapping("/sessions/internal")
+    public ResponseEntity<SessionState> postInternalSession(final @RequestBody() ValidationRequestBody body) {
+        return ResponseEntity.ok(openSession(body, true));
+    }
+
+    @PostMapping("/sessions/external")
+    public ResponseEntity<SessionState> postExternalSession(final @RequestBody() ValidationRequestBody body) {
+        return ResponseEntity.ok(openSession(body, false));
+    }
+
+    /**
+     * Applies field changes to a session opened with {@code /sessions/internal} or {@code /sessions/external} and
+     * answers the errors added and removed by them.
+     */
+    @PatchMapping("/sessions/{id}")
+    public ResponseEntity<ValidationDelta> patchSession(
+            final @PathVariable("id") String id, final @RequestBody() SessionEditBody body) {
+        admissionControl.acquire(null, null);
+        try {
+            return ResponseEntity.ok(incrementalValidator.edit(id, body.getTemplateHash(), body.getChanges()));
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    @DeleteMapping("/sessions/{id}")
+    public ResponseEntity<Void> deleteSession(final @PathVariable("id") String id) {
+        incrementalValidator.close(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private SessionState openSession(final ValidationRequestBody body, final boolean internal) {
+        admissionControl.acquire(length(body.getTemplate()), length(body.getData()));
+        try {
+            final CompiledForm form = template(body);
+            final JsonPayload data = body.getData();
+            return data.isText()
+                    ? incrementalValidator.open(form, data.getText(), internal)
+                    : incrementalValidator.open(form, data.getTree(), data.getLength(), internal);
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    @PostMapping(value = "/batch/internal", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> postInternalBatchValidation(final InputStream body) {
+        return ResponseEntity.ok(validateBatch(body, true));
+    }
+
+    @PostMapping(value = "/batch/external", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> postExternalBatchValidation(final InputStream body) {
+        return ResponseEntity.ok(validateBatch(body, false));
+    }
+
+    private StreamingResponseBody validateBatch(final InputStream body, final boolean internal) {
+        return output -> {
+            // a batch is in flight for as long as it streams, its duration says nothing about the latency
+            loadMonitor.enter();
+            try {
+                final BufferedReader input = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+                final Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                this.batchValidator.validateBatch(input, internal, writer);
+            } finally {
+                loadMonitor.exit();
+            }
+        };
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<String> handleAdmissionRejected(final AdmissionRejectedException e) {
+        switch (e.getReason()) {
+            case TOO_LARGE:
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+            case QUEUE_FULL:
+                return retryLater(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+            default:
+                return retryLater(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    @ExceptionHandler(SessionException.class)
+    public ResponseEntity<String> handleSession(final SessionException e) {
+        switch (e.getReason()) {
+            case NOT_FOUND:
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+            case TEMPLATE_CHANGED:
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+            default:
+                return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @ExceptionHandler(TemplateException.class)
+    public ResponseEntity<String> handleTemplate(final TemplateException e) {
+        switch (e.getReason()) {
+            case NOT_FOUND:
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+            default:
+                return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @ExceptionHandler(EngineUnavailableException.class)
+    public ResponseEntity<String> handleEngineUnavailable(final EngineUnavailableException e) {
+        return retryLater(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+
+    private ResponseEntity<String> retryLater(final HttpStatus status, final String message) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(message);
+    }
+
+    /**
+     * Validates data sent as a document after its template, or a reference to one, while it is read from requests
+     * longer than the streaming threshold or of unknown length, as chunked or compressed ones. Such data never is in
+     * memory as a whole, and the result cache is not used for it. Other requests are read whole first.
+     */
+    private Set<ValidationError> validate(final HttpServletRequest request, final boolean internal)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        final long length = request.getContentLengthLong();
+        final boolean streaming = length < 0 || length > streamingThreshold;
+        final ValidationRequestBody body = new ValidationRequestBody();
+        final Set<ValidationError> streamed = requestReader.read(request, body, !streaming ? null : (fields, data) ->
+                validate(fields, data, Math.max(0, length - length(fields.getTemplate())), internal));
+        return streamed != null ? streamed : validate(body, internal);
+    }
+
+    /**
+     * @param dataLength the length of the data as far as it is known before reading it, 0 if not at all
+     */
+    private Set<ValidationError> validate(
+            final ValidationRequestBody body, final JsonParser data, final long dataLength, final boolean internal)
+            throws IOException {
+        admissionControl.acquire(length(body.getTemplate()), dataLength);
+        final long start = loadMonitor.enter();
+        try {
+            return this.streamingValidator.validateForm(template(body), data, internal);
+        } finally {
+            loadMonitor.exit(start);
+            admissionControl.release();
+        }
+    }
+
+    private Set<ValidationError> validate(final ValidationRequestBody body, final boolean internal) {
+        admissionControl.acquire(length(body.getTemplate()), length(body.getData()));
+        try {
+            return validateAdmitted(body, internal);
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    /**
+     * Takes the admission permit on the request thread, so the compute threads never wait for one, and gives it back
+     * once the validation is done.
+     */
+    private CompletableFuture<ResponseEntity<Set<ValidationError>>> validateAsync(
+            final ValidationRequestBody body, final boolean internal) {
+        admissionControl.acquire(length(body.getTemplate()), length(body.getData()));
+        final CompletableFuture<ResponseEntity<Set<ValidationError>>> result;
+        try {
+            result = computePool.submit(() -> ResponseEntity.ok(validateAdmitted(body, internal)));
+        } catch (RuntimeException e) {
+            admissionControl.release();
+            throw e;
+        }
+        return result.whenComplete((response, error) -> admissionControl.release());
+    }
+
+    private Set<ValidationError> validateAdmitted(final ValidationRequestBody body, final boolean internal) {
+        final long start = loadMonitor.enter();
+        try {
+            final CompiledForm form = template(body);
+            final JsonPayload data = body.getData();
+            if (!data.isText()) {
+                return resultCache.get(form, data.getTree(), internal,
+                        () -> this.validator.validateForm(form, data.getTree(), internal));
+            }
+            return resultCache.get(form, data.getText(), internal, () -> {
+                if (data.getText().length() > streamingThreshold) {
+                    return this.streamingValidator.validateForm(form, new StringReader(data.getText()), internal);
+                }
+                return this.validator.validateForm(form, data.getText(), internal);
+            });
+        } finally {
+            loadMonitor.exit(start);
+        }
+    }
+
+    private CompiledForm template(final ValidationRequestBody body) {
+        if (body.getTemplateId() != null) {
+            return templateRegistry.get(body.getTemplateId(), body.getTemplateVersion());
+        }
+        if (body.getTemplateHash() != null) {
+            return templateCache.getByHash(body.getTemplateHash());
+        }
+        return templateCache.get(text(body.getTemplate()));
+    }
+
+    private static String text(final JsonPayload payload) {
+        return payload.isText() ? payload.getText() : payload.getTree().toString();
+    }
+
+    private static long length(final JsonPayload payload) {
+        return payload == null ? 0 : payload.getLength();
+    }
 }
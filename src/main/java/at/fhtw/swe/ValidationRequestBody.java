@@ -1,22 +1,68 @@
 package at.fhtw.swe;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The template and the data to validate. The template is either given itself, by the hash {@code POST /templates}
+ * answered for it, or by the id and, optionally, the version of a registered template.
+ */
 public class ValidationRequestBody {
-    private String data;
-    private String template;
+    private JsonPayload data;
+    private JsonPayload template;
+    private String templateHash;
+    private String templateId;
+    private Integer templateVersion;
 
-    public String getData() {
+    public JsonPayload getData() {
         return data;
     }
 
-    public void setData(final String data) {
+    @JsonProperty("data")
+    public void setData(final JsonPayload data) {
         this.data = data;
     }
 
-    public String getTemplate() {
+    @JsonIgnore
+    public void setData(final String data) {
+        this.data = JsonPayload.of(data);
+    }
+
+    public JsonPayload getTemplate() {
         return template;
     }
 
-    public void setTemplate(final String template) {
+    @JsonProperty("template")
+    public void setTemplate(final JsonPayload template) {
         this.template = template;
     }
+
+    @JsonIgnore
+    public void setTemplate(final String template) {
+        this.template = JsonPayload.of(template);
+    }
+
+    public String getTemplateHash() {
+        return templateHash;
+    }
+
+    public void setTemplateHash(final String templateHash) {
+        this.templateHash = templateHash;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(final String templateId) {
+        this.templateId = templateId;
+    }
+
+    public Integer getTemplateVersion() {
+        return templateVersion;
+    }
+
+    public void setTemplateVersion(final Integer templateVersion) {
+        this.templateVersion = templateVersion;
+    }
 }
@@ -0,0 +1,128 @@
+package at.fhtw.swe;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Reads a {@link ValidationRequestBody} token by token, in JSON, Smile or CBOR, the formats of {@link WebConfiguration}.
+ * Data sent as a document, not embedded in a string, may be handed to a {@link DataReader} instead of being read
+ * into the body, so it can be validated while it is read from the request.
+ */
+@Component
+public class ValidationRequestReader {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+    private static final List<MediaType> SUPPORTED = Arrays.asList(MediaType.APPLICATION_JSON, SMILE, CBOR);
+
+    private final transient ObjectMapper json;
+    private final transient ObjectMapper smile = new ObjectMapper(new SmileFactory());
+    private final transient ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+    public ValidationRequestReader(final ObjectMapper objectMapper) {
+        this.json = objectMapper;
+    }
+
+    /**
+     * @param dataReader offered a data document once a template or a reference to one has been read, may be
+     *                   {@code null}
+     * @return the result of the data reader, {@code null} if it was not called or declined the data, which is then
+     * read into the body
+     * @throws HttpMediaTypeNotSupportedException if the request is in none of the formats
+     * @throws HttpMessageNotReadableException    if the request is not a valid {@link ValidationRequestBody}
+     */
+    public <T> T read(
+            final HttpServletRequest request, final ValidationRequestBody body, final DataReader<T> dataReader)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        T result = null;
+        try (JsonParser parser = mapper(request).getFactory().createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new HttpMessageNotReadableException(
+                        "A validation request must be an object", new ServletServerHttpRequest(request));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "data":
+                        if (result == null && dataReader != null && token == JsonToken.START_OBJECT
+                                && hasTemplate(body)) {
+                            result = dataReader.read(body, parser);
+                            if (result != null) {
+                                break;
+                            }
+                        }
+                        body.setData(parser.readValueAs(JsonPayload.class));
+                        break;
+                    case "template":
+                        body.setTemplate(parser.readValueAs(JsonPayload.class));
+                        break;
+                    case "templateHash":
+                        body.setTemplateHash(token == JsonToken.VALUE_NULL ? null : parser.getValueAsString());
+                        break;
+                    case "templateId":
+                        body.setTemplateId(token == JsonToken.VALUE_NULL ? null : parser.getValueAsString());
+                        break;
+                    case "templateVersion":
+                        body.setTemplateVersion(token == JsonToken.VALUE_NULL ? null : parser.getValueAsInt());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException(
+                    "Invalid validation request: " + e.getOriginalMessage(), e, new ServletServerHttpRequest(request));
+        }
+        return result;
+    }
+
+    private ObjectMapper mapper(final HttpServletRequest request) throws HttpMediaTypeNotSupportedException {
+        final MediaType contentType;
+        try {
+            contentType = MediaType.parseMediaType(request.getContentType());
+        } catch (IllegalArgumentException e) {
+            throw new HttpMediaTypeNotSupportedException(e.getMessage());
+        }
+        if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return json;
+        } else if (SMILE.isCompatibleWith(contentType)) {
+            return smile;
+        } else if (CBOR.isCompatibleWith(contentType)) {
+            return cbor;
+        }
+        throw new HttpMediaTypeNotSupportedException(contentType, SUPPORTED);
+    }
+
+    private static boolean hasTemplate(final ValidationRequestBody body) {
+        return body.getTemplateId() != null || body.getTemplateHash() != null || body.getTemplate() != null;
+    }
+
+    /**
+     * Reads a data document from the request.
+     */
+    @FunctionalInterface
+    public interface DataReader<T> {
+
+        /**
+         * @param body   the fields read before the data
+         * @param parser positioned on the start of the data, to be left on its end
+         * @return the result, {@code null} to decline the data without having read from the parser
+         */
+        T read(ValidationRequestBody body, JsonParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,23 @@
+package at.fhtw.swe;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Reads and writes Smile ({@code application/x-jackson-smile}) and CBOR ({@code application/cbor}) next to JSON. They
+ * come after JSON, so clients not asking for a binary format keep getting JSON.
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(final List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2SmileHttpMessageConverter());
+        converters.add(new MappingJackson2CborHttpMessageConverter());
+    }
+}
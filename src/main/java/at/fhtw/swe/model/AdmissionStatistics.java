@@ -0,0 +1,56 @@
+package at.fhtw.swe.model;
+
+public class AdmissionStatistics {
+    private final int permits;
+    private final int available;
+    private final int queued;
+    private final long admitted;
+    private final long tooLarge;
+    private final long queueFull;
+    private final long queueTimeouts;
+
+    public AdmissionStatistics(
+            final int permits,
+            final int available,
+            final int queued,
+            final long admitted,
+            final long tooLarge,
+            final long queueFull,
+            final long queueTimeouts) {
+        this.permits = permits;
+        this.available = available;
+        this.queued = queued;
+        this.admitted = admitted;
+        this.tooLarge = tooLarge;
+        this.queueFull = queueFull;
+        this.queueTimeouts = queueTimeouts;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    public long getTooLarge() {
+        return tooLarge;
+    }
+
+    public long getQueueFull() {
+        return queueFull;
+    }
+
+    public long getQueueTimeouts() {
+        return queueTimeouts;
+    }
+}
@@ -0,0 +1,33 @@
+package at.fhtw.swe.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Set;
+
+/**
+ * Outcome of one document of a batch, either its validation errors or the reason it could not be validated.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    private final long index;
+    private final Set<ValidationError> errors;
+    private final String failure;
+
+    public BatchResult(final long index, final Set<ValidationError> errors, final String failure) {
+        this.index = index;
+        this.errors = errors;
+        this.failure = failure;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public Set<ValidationError> getErrors() {
+        return errors;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+}
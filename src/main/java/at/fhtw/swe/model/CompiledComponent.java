@@ -0,0 +1,41 @@
+package at.fhtw.swe.model;
+
+/**
+ * A template component carrying validations, flattened out of the component tree.
+ */
+public final class CompiledComponent {
+    private final String key;
+    private final String type;
+    private final boolean insideGrid;
+    private final ValidationRules internalRules;
+    private final ValidationRules externalRules;
+
+    public CompiledComponent(
+            final String key,
+            final String type,
+            final boolean insideGrid,
+            final ValidationRules internalRules,
+            final ValidationRules externalRules) {
+        this.key = key;
+        this.type = type;
+        this.insideGrid = insideGrid;
+        this.internalRules = internalRules;
+        this.externalRules = externalRules;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isInsideGrid() {
+        return insideGrid;
+    }
+
+    public ValidationRules getRules(final boolean internal) {
+        return internal ? internalRules : externalRules;
+    }
+}
@@ -0,0 +1,77 @@
+package at.fhtw.swe.model;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable validation plan of a form template, identified by the hash of the template text.
+ */
+public final class CompiledForm {
+    private final String hash;
+    private final List<CompiledComponent> components;
+    private final Set<String> keys;
+    private final Set<String> jsonataFields;
+    private final boolean timeDependentInternal;
+    private final boolean timeDependentExternal;
+
+    /**
+     * @param jsonataFields         the fields the jsonata rules may read, {@code null} if they may read the whole
+     *                              document
+     * @param timeDependentInternal whether an internal jsonata rule reads the current date
+     * @param timeDependentExternal whether an external jsonata rule reads the current date
+     */
+    public CompiledForm(
+            final String hash,
+            final List<CompiledComponent> components,
+            final Set<String> jsonataFields,
+            final boolean timeDependentInternal,
+            final boolean timeDependentExternal) {
+        this.hash = hash;
+        this.timeDependentInternal = timeDependentInternal;
+        this.timeDependentExternal = timeDependentExternal;
+        this.components = Collections.unmodifiableList(components);
+        this.jsonataFields = jsonataFields == null ? null : Collections.unmodifiableSet(jsonataFields);
+
+        final Set<String> componentKeys = new HashSet<>();
+        components.forEach(component -> componentKeys.add(component.getKey()));
+        this.keys = Collections.unmodifiableSet(componentKeys);
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public List<CompiledComponent> getComponents() {
+        return components;
+    }
+
+    /**
+     * Keys of all components with validations, which are the only keys of the data that need to be looked at.
+     */
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Names of the fields the jsonata rules of the form may read, at any depth of the data.
+     */
+    public Set<String> getJsonataFields() {
+        return jsonataFields;
+    }
+
+    /**
+     * Whether the jsonata rules of the form may read parts of the data that cannot be told by field names.
+     */
+    public boolean isJsonataReadingWholeDocument() {
+        return jsonataFields == null;
+    }
+
+    /**
+     * Whether the result of validating the same data may change over time, because a rule reads {@code @date:now@}.
+     */
+    public boolean isTimeDependent(final boolean internal) {
+        return internal ? timeDependentInternal : timeDependentExternal;
+    }
+}
@@ -0,0 +1,59 @@
+package at.fhtw.swe.model;
+
+/**
+ * The location of a value in a data document, as a chain of field names and array indices. Paths are built while
+ * walking the document and only rendered, as a JSON Pointer, when an error is reported for the value.
+ */
+public final class DataPath {
+    public static final DataPath ROOT = new DataPath(null, null, -1);
+
+    private final DataPath parent;
+    private final String field;
+    private final int index;
+
+    private DataPath(final DataPath parent, final String field, final int index) {
+        this.parent = parent;
+        this.field = field;
+        this.index = index;
+    }
+
+    public DataPath field(final String field) {
+        return new DataPath(this, field, -1);
+    }
+
+    public DataPath element(final int index) {
+        return new DataPath(this, null, index);
+    }
+
+    /**
+     * @return the path as a JSON Pointer (RFC 6901), for example {@code /weitereBeteiligtePersonen/1/nachname}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder pointer = new StringBuilder();
+        append(pointer);
+        return pointer.toString();
+    }
+
+    private void append(final StringBuilder pointer) {
+        if (parent == null) {
+            return;
+        }
+        parent.append(pointer);
+        pointer.append('/');
+        if (field == null) {
+            pointer.append(index);
+            return;
+        }
+        for (int position = 0; position < field.length(); position++) {
+            final char character = field.charAt(position);
+            if (character == '~') {
+                pointer.append("~0");
+            } else if (character == '/') {
+                pointer.append("~1");
+            } else {
+                pointer.append(character);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package at.fhtw.swe.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * All errors of one key and violation, with the grid rows they occurred in as a bitset: the Base64 encoding of the
+ * little-endian bytes in which bit {@code n} is set if row {@code n} failed. Groups of errors outside of grids have no
+ * rows.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ErrorGroup {
+    private final String key;
+    private final String violation;
+    private final int count;
+    private final String rows;
+
+    public ErrorGroup(final String key, final String violation, final int count, final String rows) {
+        this.key = key;
+        this.violation = violation;
+        this.count = count;
+        this.rows = rows;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getViolation() {
+        return violation;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getRows() {
+        return rows;
+    }
+}
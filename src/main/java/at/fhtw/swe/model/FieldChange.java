@@ -0,0 +1,46 @@
+package at.fhtw.swe.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The new value of one field of a validation session, in the grid row it belongs to, {@code null} outside of grids.
+ * The grid is needed for keys that are columns of several grids, and to add a field missing from its row so far.
+ */
+public class FieldChange {
+    private String key;
+    private Integer row;
+    private String grid;
+    private JsonNode value;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    public Integer getRow() {
+        return row;
+    }
+
+    public void setRow(final Integer row) {
+        this.row = row;
+    }
+
+    public String getGrid() {
+        return grid;
+    }
+
+    public void setGrid(final String grid) {
+        this.grid = grid;
+    }
+
+    public JsonNode getValue() {
+        return value;
+    }
+
+    public void setValue(final JsonNode value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,106 @@
+package at.fhtw.swe.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled regex with a budget for the time a single match may take. Catastrophic backtracking would otherwise tie
+ * up a worker thread for as long as the pattern likes; the budget is enforced by checking the clock while the matcher
+ * reads the input. Every thread reuses its own matcher, so a match does not allocate; the matcher is reset after each
+ * match, so it does not keep the input alive.
+ */
+public final class GuardedPattern {
+
+    public enum Match {
+        MATCH, NO_MATCH, TIMEOUT
+    }
+
+    private static final int CHECK_INTERVAL = 1024;
+    private static final String EMPTY = "";
+
+    private final Pattern pattern;
+    private final long budgetNanos;
+    private final ThreadLocal<GuardedMatcher> matchers;
+
+    public GuardedPattern(final Pattern pattern, final long budgetMillis) {
+        this.pattern = pattern;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.matchers = ThreadLocal.withInitial(() -> new GuardedMatcher(pattern));
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public Match matches(final String value) {
+        final GuardedMatcher matcher = matchers.get();
+        try {
+            if (budgetNanos <= 0) {
+                return matcher.matcher.reset(value).matches() ? Match.MATCH : Match.NO_MATCH;
+            }
+            matcher.input.reset(value, System.nanoTime() + budgetNanos);
+            return matcher.matcher.reset(matcher.input).matches() ? Match.MATCH : Match.NO_MATCH;
+        } catch (BudgetExceededException e) {
+            return Match.TIMEOUT;
+        } finally {
+            // the matcher outlives the match in its thread, it must not keep the value reachable
+            matcher.matcher.reset(EMPTY);
+            matcher.input.reset(null, 0);
+        }
+    }
+
+    private static final class GuardedMatcher {
+        private final Matcher matcher;
+        private final DeadlineCharSequence input = new DeadlineCharSequence(null, 0);
+
+        private GuardedMatcher(final Pattern pattern) {
+            this.matcher = pattern.matcher("");
+        }
+    }
+
+    private static final class DeadlineCharSequence implements CharSequence {
+        private String value;
+        private long deadline;
+        private int reads;
+
+        private DeadlineCharSequence(final String value, final long deadline) {
+            reset(value, deadline);
+        }
+
+        private void reset(final String value, final long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+            this.reads = 0;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                throw new BudgetExceededException();
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return new DeadlineCharSequence(value.substring(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    private static final class BudgetExceededException extends RuntimeException {
+        private BudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package at.fhtw.swe.model;
+
+public class LoadStatistics {
+    private final boolean ready;
+    private final boolean warm;
+    private final int inFlight;
+    private final int maxInFlight;
+    private final long p99Millis;
+    private final long maxP99Millis;
+    private final int engineWaiting;
+    private final int maxEngineWaiting;
+
+    public LoadStatistics(
+            final boolean ready,
+            final boolean warm,
+            final int inFlight,
+            final int maxInFlight,
+            final long p99Millis,
+            final long maxP99Millis,
+            final int engineWaiting,
+            final int maxEngineWaiting) {
+        this.ready = ready;
+        this.warm = warm;
+        this.inFlight = inFlight;
+        this.maxInFlight = maxInFlight;
+        this.p99Millis = p99Millis;
+        this.maxP99Millis = maxP99Millis;
+        this.engineWaiting = engineWaiting;
+        this.maxEngineWaiting = maxEngineWaiting;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getP99Millis() {
+        return p99Millis;
+    }
+
+    public long getMaxP99Millis() {
+        return maxP99Millis;
+    }
+
+    public int getEngineWaiting() {
+        return engineWaiting;
+    }
+
+    public int getMaxEngineWaiting() {
+        return maxEngineWaiting;
+    }
+}
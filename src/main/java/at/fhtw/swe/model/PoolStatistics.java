@@ -0,0 +1,70 @@
+package at.fhtw.swe.model;
+
+public class PoolStatistics {
+    private final int size;
+    private final int created;
+    private final int idle;
+    private final int waiting;
+    private final long quarantined;
+    private final long acquisitions;
+    private final long timeouts;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+
+    public PoolStatistics(
+            final int size,
+            final int created,
+            final int idle,
+            final int waiting,
+            final long quarantined,
+            final long acquisitions,
+            final long timeouts,
+            final long totalWaitMillis,
+            final long maxWaitMillis) {
+        this.size = size;
+        this.created = created;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.quarantined = quarantined;
+        this.acquisitions = acquisitions;
+        this.timeouts = timeouts;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public long getQuarantined() {
+        return quarantined;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+}
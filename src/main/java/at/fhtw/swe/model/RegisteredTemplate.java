@@ -0,0 +1,28 @@
+package at.fhtw.swe.model;
+
+/**
+ * A version of a template in the registry, referenced in validation requests by its id and version.
+ */
+public class RegisteredTemplate {
+    private final String id;
+    private final int version;
+    private final String templateHash;
+
+    public RegisteredTemplate(final String id, final int version, final String templateHash) {
+        this.id = id;
+        this.version = version;
+        this.templateHash = templateHash;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getTemplateHash() {
+        return templateHash;
+    }
+}
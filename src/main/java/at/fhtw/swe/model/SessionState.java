@@ -0,0 +1,31 @@
+package at.fhtw.swe.model;
+
+import java.util.Set;
+
+/**
+ * A validation session as opened: the id to send the edits to, the hash of its template and the errors of the whole
+ * form.
+ */
+public class SessionState {
+    private final String id;
+    private final String templateHash;
+    private final Set<ValidationError> errors;
+
+    public SessionState(final String id, final String templateHash, final Set<ValidationError> errors) {
+        this.id = id;
+        this.templateHash = templateHash;
+        this.errors = errors;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTemplateHash() {
+        return templateHash;
+    }
+
+    public Set<ValidationError> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,16 @@
+package at.fhtw.swe.model;
+
+/**
+ * How to reference an uploaded template in later requests instead of sending it again.
+ */
+public class TemplateReference {
+    private final String templateHash;
+
+    public TemplateReference(final String templateHash) {
+        this.templateHash = templateHash;
+    }
+
+    public String getTemplateHash() {
+        return templateHash;
+    }
+}
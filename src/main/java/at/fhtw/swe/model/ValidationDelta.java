@@ -0,0 +1,24 @@
+package at.fhtw.swe.model;
+
+import java.util.Set;
+
+/**
+ * How the errors of a validation session changed with an edit.
+ */
+public class ValidationDelta {
+    private final Set<ValidationError> added;
+    private final Set<ValidationError> removed;
+
+    public ValidationDelta(final Set<ValidationError> added, final Set<ValidationError> removed) {
+        this.added = added;
+        this.removed = removed;
+    }
+
+    public Set<ValidationError> getAdded() {
+        return added;
+    }
+
+    public Set<ValidationError> getRemoved() {
+        return removed;
+    }
+}
@@ -1,18 +1,43 @@
 package at.fhtw.swe.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.Objects;
 
+/**
+ * A rule violated by a value. Values inside grids carry their row, and every value found in the data its path as a
+ * JSON Pointer; both are left out of the response where they are unknown, as for a missing required value.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ValidationError {
     private transient String key;
     private transient String violation;
+    private transient Integer row;
+    private transient String path;
+    /** computed on first use, errors are hashed into sets several times on their way to the response */
+    private transient int hash;
 
     public ValidationError key(final String key) {
         this.key = key;
+        this.hash = 0;
         return this;
     }
 
     public ValidationError violation(final String violation) {
         this.violation = violation;
+        this.hash = 0;
+        return this;
+    }
+
+    public ValidationError row(final Integer row) {
+        this.row = row;
+        this.hash = 0;
+        return this;
+    }
+
+    public ValidationError path(final String path) {
+        this.path = path;
+        this.hash = 0;
         return this;
     }
 
@@ -24,6 +49,14 @@ public class ValidationError {
         return violation;
     }
 
+    public Integer getRow() {
+        return row;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
     @Override
     public boolean equals(final Object object) {
         if (this == object) {
@@ -33,13 +66,24 @@ public class ValidationError {
             return false;
         }
         final ValidationError that = (ValidationError) object;
-        return Objects.equals(key, that.key) &&
-                Objects.equals(violation, that.violation);
+        return hashCode() == that.hashCode() &&
+                Objects.equals(key, that.key) &&
+                Objects.equals(violation, that.violation) &&
+                Objects.equals(row, that.row) &&
+                Objects.equals(path, that.path);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(key, violation);
+        int result = hash;
+        if (result == 0) {
+            result = Objects.hashCode(key);
+            result = 31 * result + Objects.hashCode(violation);
+            result = 31 * result + Objects.hashCode(row);
+            result = 31 * result + Objects.hashCode(path);
+            hash = result;
+        }
+        return result;
     }
 
     @Override
@@ -47,6 +91,8 @@ public class ValidationError {
         return "ValidationError{" +
                 "key='" + key + '\'' +
                 ", violation='" + violation + '\'' +
+                ", row=" + row +
+                ", path='" + path + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,159 @@
+package at.fhtw.swe.model;
+
+import java.time.Instant;
+
+/**
+ * Validation instructions of one component, already resolved for either the internal or the external mode.
+ * A {@code null} rule is not applicable to the component.
+ */
+public final class ValidationRules {
+    private final boolean required;
+    private final Integer minLength;
+    private final Integer maxLength;
+    private final GuardedPattern pattern;
+    private final Double min;
+    private final Double max;
+    private final Instant minDate;
+    private final Instant maxDate;
+    private final Integer minRowCount;
+    private final Integer maxRowCount;
+    private final String jsonata;
+
+    private ValidationRules(final Builder builder) {
+        this.required = builder.required;
+        this.minLength = builder.minLength;
+        this.maxLength = builder.maxLength;
+        this.pattern = builder.pattern;
+        this.min = builder.min;
+        this.max = builder.max;
+        this.minDate = builder.minDate;
+        this.maxDate = builder.maxDate;
+        this.minRowCount = builder.minRowCount;
+        this.maxRowCount = builder.maxRowCount;
+        this.jsonata = builder.jsonata;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    public Integer getMinLength() {
+        return minLength;
+    }
+
+    public Integer getMaxLength() {
+        return maxLength;
+    }
+
+    public GuardedPattern getPattern() {
+        return pattern;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public Instant getMinDate() {
+        return minDate;
+    }
+
+    public Instant getMaxDate() {
+        return maxDate;
+    }
+
+    public Integer getMinRowCount() {
+        return minRowCount;
+    }
+
+    public Integer getMaxRowCount() {
+        return maxRowCount;
+    }
+
+    public String getJsonata() {
+        return jsonata;
+    }
+
+    public static final class Builder {
+        private boolean required;
+        private Integer minLength;
+        private Integer maxLength;
+        private GuardedPattern pattern;
+        private Double min;
+        private Double max;
+        private Instant minDate;
+        private Instant maxDate;
+        private Integer minRowCount;
+        private Integer maxRowCount;
+        private String jsonata;
+
+        private Builder() {
+        }
+
+        public Builder required(final boolean required) {
+            this.required = required;
+            return this;
+        }
+
+        public Builder minLength(final Integer minLength) {
+            this.minLength = minLength;
+            return this;
+        }
+
+        public Builder maxLength(final Integer maxLength) {
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        public Builder pattern(final GuardedPattern pattern) {
+            this.pattern = pattern;
+            return this;
+        }
+
+        public Builder min(final Double min) {
+            this.min = min;
+            return this;
+        }
+
+        public Builder max(final Double max) {
+            this.max = max;
+            return this;
+        }
+
+        public Builder minDate(final Instant minDate) {
+            this.minDate = minDate;
+            return this;
+        }
+
+        public Builder maxDate(final Instant maxDate) {
+            this.maxDate = maxDate;
+            return this;
+        }
+
+        public Builder minRowCount(final Integer minRowCount) {
+            this.minRowCount = minRowCount;
+            return this;
+        }
+
+        public Builder maxRowCount(final Integer maxRowCount) {
+            this.maxRowCount = maxRowCount;
+            return this;
+        }
+
+        public Builder jsonata(final String jsonata) {
+            this.jsonata = jsonata;
+            return this;
+        }
+
+        public ValidationRules build() {
+            return new ValidationRules(this);
+        }
+    }
+}
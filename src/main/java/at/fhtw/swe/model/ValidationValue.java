@@ -4,11 +4,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 public class ValidationValue {
     private JsonNode value;
-    private JsonNode instruction;
+    private ValidationRules rules;
     private String key;
     private String type;
     private Integer row;
-    private boolean internal;
+    private Integer size;
+    private DataPath path;
 
     public JsonNode getValue() {
         return value;
@@ -18,12 +19,12 @@ public class ValidationValue {
         this.value = value;
     }
 
-    public JsonNode getInstruction() {
-        return instruction;
+    public ValidationRules getRules() {
+        return rules;
     }
 
-    public void setInstruction(final JsonNode instruction) {
-        this.instruction = instruction;
+    public void setRules(final ValidationRules rules) {
+        this.rules = rules;
     }
 
     public String getKey() {
@@ -50,11 +51,28 @@ public class ValidationValue {
         this.row = row;
     }
 
-    public boolean isInternal() {
-        return internal;
+    /**
+     * Number of elements of the value. Set explicitly when a container value was streamed instead of materialized.
+     */
+    public Integer getSize() {
+        if (size != null) {
+            return size;
+        }
+        return value == null ? null : value.size();
     }
 
-    public void setInternal(final boolean internal) {
-        this.internal = internal;
+    public void setSize(final Integer size) {
+        this.size = size;
+    }
+
+    /**
+     * Where the value was found in the data, {@code null} if it is missing.
+     */
+    public DataPath getPath() {
+        return path;
+    }
+
+    public void setPath(final DataPath path) {
+        this.path = path;
     }
 }
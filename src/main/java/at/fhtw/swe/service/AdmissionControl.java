@@ -0,0 +1,119 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.AdmissionStatistics;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounds the validations running at the same time. A request beyond the permits waits in a bounded queue for at most
+ * the queue timeout; a request finding the queue full, or timing out in it, is rejected right away instead of adding
+ * to the contention of those already running. Requests larger than the size limits are rejected before they take a
+ * permit.
+ */
+@Service
+public class AdmissionControl {
+
+    private final transient int permits;
+    private final transient Semaphore semaphore;
+    private final transient int queueDepth;
+    private final transient long queueTimeoutMillis;
+    private final transient int maxTemplateChars;
+    private final transient int maxDataChars;
+
+    private final transient AtomicInteger queued = new AtomicInteger();
+    private final transient AtomicLong admitted = new AtomicLong();
+    private final transient AtomicLong tooLarge = new AtomicLong();
+    private final transient AtomicLong queueFull = new AtomicLong();
+    private final transient AtomicLong queueTimeouts = new AtomicLong();
+
+    public AdmissionControl(
+            @Value("${validator.admission.permits:0}") final int permits,
+            @Value("${validator.admission.queue-depth:0}") final int queueDepth,
+            @Value("${validator.admission.queue-timeout-ms:5000}") final long queueTimeoutMillis,
+            @Value("${validator.admission.max-template-chars:1048576}") final int maxTemplateChars,
+            @Value("${validator.admission.max-data-chars:67108864}") final int maxDataChars) {
+        this.permits = permits > 0 ? permits : Runtime.getRuntime().availableProcessors() * 2;
+        this.semaphore = new Semaphore(this.permits, true);
+        this.queueDepth = queueDepth > 0 ? queueDepth : this.permits * 4;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.maxTemplateChars = maxTemplateChars;
+        this.maxDataChars = maxDataChars;
+    }
+
+    /**
+     * Counts a request rejected as too large while or before its body is read, by the size of the body alone.
+     */
+    public AdmissionRejectedException rejectTooLarge(final String message) {
+        tooLarge.incrementAndGet();
+        return new AdmissionRejectedException(AdmissionRejectedException.Reason.TOO_LARGE, message);
+    }
+
+    /**
+     * Takes a permit, which must be given back with {@link #release()}.
+     *
+     * @throws AdmissionRejectedException if the request is too large or no permit is available in time
+     */
+    public void acquire(final String template, final String data) {
+        acquire(length(template), length(data));
+    }
+
+    /**
+     * @param templateLength the characters of the template, or its bytes in a binary format
+     * @param dataLength     the characters of the data, or its bytes in a binary format
+     */
+    public void acquire(final long templateLength, final long dataLength) {
+        if (templateLength > maxTemplateChars || dataLength > maxDataChars) {
+            tooLarge.incrementAndGet();
+            throw new AdmissionRejectedException(AdmissionRejectedException.Reason.TOO_LARGE,
+                    "Templates are limited to " + maxTemplateChars + " and data to " + maxDataChars + " characters");
+        }
+
+        if (!semaphore.tryAcquire()) {
+            if (queued.incrementAndGet() > queueDepth) {
+                queued.decrementAndGet();
+                queueFull.incrementAndGet();
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.QUEUE_FULL,
+                        "Too many validations waiting");
+            }
+            try {
+                if (!semaphore.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    queueTimeouts.incrementAndGet();
+                    throw new AdmissionRejectedException(AdmissionRejectedException.Reason.QUEUE_TIMEOUT,
+                            "No validation slot available within " + queueTimeoutMillis + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AdmissionRejectedException(AdmissionRejectedException.Reason.QUEUE_TIMEOUT,
+                        "Interrupted while waiting for a validation slot");
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+        admitted.incrementAndGet();
+    }
+
+    public void release() {
+        semaphore.release();
+    }
+
+    public AdmissionStatistics getStatistics() {
+        return new AdmissionStatistics(
+                permits,
+                semaphore.availablePermits(),
+                queued.get(),
+                admitted.get(),
+                tooLarge.get(),
+                queueFull.get(),
+                queueTimeouts.get());
+    }
+
+    private static int length(final String value) {
+        return value == null ? 0 : value.length();
+    }
+}
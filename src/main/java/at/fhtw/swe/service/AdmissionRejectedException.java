@@ -0,0 +1,23 @@
+package at.fhtw.swe.service;
+
+/**
+ * Thrown when a validation request is not admitted, either because it is too large or because the instance is
+ * saturated.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    public enum Reason {
+        TOO_LARGE, QUEUE_FULL, QUEUE_TIMEOUT
+    }
+
+    private final transient Reason reason;
+
+    public AdmissionRejectedException(final Reason reason, final String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,124 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.BatchResult;
+import at.fhtw.swe.model.CompiledForm;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Validates a stream of newline delimited json documents against one template. The first line of the input is the
+ * template, every following line one data document. Documents are validated in parallel, the results are written in
+ * input order as one json line per document, as soon as they are available. At most a window of documents is in
+ * flight, so neither input nor output of the batch is ever buffered as a whole.
+ */
+@Service
+public class BatchValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchValidator.class);
+
+    private final transient Validator validator;
+    private final transient TemplateCache templateCache;
+    private final transient ObjectMapper objectMapper;
+    private final transient ExecutorService executor;
+    private final transient int window;
+
+    public BatchValidator(
+            final Validator validator,
+            final TemplateCache templateCache,
+            final ObjectMapper objectMapper,
+            @Value("${validator.batch.parallelism:0}") final int parallelism,
+            @Value("${validator.batch.window:0}") final int window) {
+        this.validator = validator;
+        this.templateCache = templateCache;
+        this.objectMapper = objectMapper;
+
+        final int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "batch-validator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.window = window > 0 ? window : threads * 4;
+    }
+
+    public void validateBatch(final BufferedReader input, final boolean internal, final Writer output)
+            throws IOException {
+        String template = input.readLine();
+        while (template != null && template.trim().isEmpty()) {
+            template = input.readLine();
+        }
+        if (template == null) {
+            return;
+        }
+
+        final CompiledForm form = templateCache.get(template);
+        final Deque<CompletableFuture<BatchResult>> inFlight = new ArrayDeque<>(window);
+        long index = 0;
+
+        for (String line = input.readLine(); line != null; line = input.readLine()) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (inFlight.size() >= window) {
+                write(inFlight.poll(), output);
+            }
+
+            final long documentIndex = index++;
+            final String data = line;
+            inFlight.add(CompletableFuture.supplyAsync(() -> validate(form, documentIndex, data, internal), executor));
+        }
+
+        while (!inFlight.isEmpty()) {
+            write(inFlight.poll(), output);
+        }
+        output.flush();
+    }
+
+    private BatchResult validate(
+            final CompiledForm form, final long index, final String data, final boolean internal) {
+        try {
+            return new BatchResult(index, validator.validateForm(form, data, internal), null);
+        } catch (RuntimeException e) {
+            LOG.debug("document {} of batch could not be validated", index, e);
+            return new BatchResult(index, null, e.getMessage());
+        }
+    }
+
+    private void write(final CompletableFuture<BatchResult> result, final Writer output) throws IOException {
+        if (!result.isDone()) {
+            // the client gets everything finished so far while we wait
+            output.flush();
+        }
+        try {
+            output.write(objectMapper.writeValueAsString(result.get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating batch", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch validation failed", e.getCause());
+        }
+        output.write('\n');
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package at.fhtw.swe.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * A fixed number of threads for the CPU-bound validations of the asynchronous endpoints. The request thread only
+ * hands the validation over and is free again, so the number of requests in progress no longer grows the number of
+ * threads; validations beyond the threads wait in a bounded queue, and a full queue rejects the request right away.
+ */
+@Service
+public class ComputePool {
+
+    private final transient ThreadPoolExecutor executor;
+
+    public ComputePool(
+            @Value("${validator.async.threads:0}") final int threads,
+            @Value("${validator.async.queue-capacity:0}") final int queueCapacity) {
+        final int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity > 0 ? queueCapacity : size * 4),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "validator-compute-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @throws AdmissionRejectedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<T> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new AdmissionRejectedException(AdmissionRejectedException.Reason.QUEUE_FULL,
+                    "Too many validations waiting");
+        }
+        return result;
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,97 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.DataPath;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All values of the requested keys in a data document, collected in a single walk over the document. This replaces
+ * one {@code $..key} deep scan per validated component. Values are listed in document order, together with their
+ * index in the closest enclosing array, which is the grid row of values inside grids, and their path.
+ */
+public final class DataIndex {
+    private final Map<String, List<IndexedValue>> values;
+
+    private DataIndex(final Map<String, List<IndexedValue>> values) {
+        this.values = values;
+    }
+
+    public static DataIndex of(final JsonNode data, final Set<String> keys) {
+        return of(data, keys, DataPath.ROOT);
+    }
+
+    /**
+     * @param path where the data was found, if it is part of a larger document
+     */
+    public static DataIndex of(final JsonNode data, final Set<String> keys, final DataPath path) {
+        final Map<String, List<IndexedValue>> values = new HashMap<>(keys.size() * 2);
+        walk(data, null, path, keys, values);
+        return new DataIndex(values);
+    }
+
+    public List<IndexedValue> get(final String key) {
+        return values.getOrDefault(key, Collections.emptyList());
+    }
+
+    private static void walk(
+            final JsonNode node,
+            final Integer row,
+            final DataPath path,
+            final Set<String> keys,
+            final Map<String, List<IndexedValue>> values) {
+        if (node.isObject()) {
+            final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final boolean indexed = keys.contains(field.getKey());
+                if (!indexed && !field.getValue().isContainerNode()) {
+                    continue;
+                }
+                final DataPath fieldPath = path.field(field.getKey());
+                if (indexed) {
+                    values.computeIfAbsent(field.getKey(), key -> new ArrayList<>(1))
+                            .add(new IndexedValue(field.getValue(), row, fieldPath));
+                }
+                walk(field.getValue(), row, fieldPath, keys, values);
+            }
+        } else if (node.isArray()) {
+            for (int index = 0; index < node.size(); index++) {
+                final JsonNode element = node.get(index);
+                if (element.isContainerNode()) {
+                    walk(element, index, path.element(index), keys, values);
+                }
+            }
+        }
+    }
+
+    public static final class IndexedValue {
+        private final JsonNode value;
+        private final Integer row;
+        private final DataPath path;
+
+        private IndexedValue(final JsonNode value, final Integer row, final DataPath path) {
+            this.value = value;
+            this.row = row;
+            this.path = path;
+        }
+
+        public JsonNode getValue() {
+            return value;
+        }
+
+        public Integer getRow() {
+            return row;
+        }
+
+        public DataPath getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package at.fhtw.swe.service;
+
+/**
+ * Thrown when no jsonata engine could be borrowed from the pool in time.
+ */
+public class EngineUnavailableException extends RuntimeException {
+
+    public EngineUnavailableException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
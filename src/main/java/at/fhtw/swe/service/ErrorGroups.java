@@ -0,0 +1,54 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.ErrorGroup;
+import at.fhtw.swe.model.ValidationError;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compact encoding of validation errors: one {@link ErrorGroup} per key and violation, in the order of their
+ * first error, so a grid failing in thousands of rows is answered with a few groups instead of one error per row.
+ */
+public final class ErrorGroups {
+
+    private ErrorGroups() {
+    }
+
+    public static List<ErrorGroup> of(final Collection<ValidationError> errors) {
+        final Map<String, Group> groups = new LinkedHashMap<>();
+        for (ValidationError error : errors) {
+            final Group group = groups.computeIfAbsent(
+                    error.getKey() + '\u0000' + error.getViolation(), id -> new Group(error));
+            group.count++;
+            if (error.getRow() != null) {
+                group.rows.set(error.getRow());
+            }
+        }
+
+        final List<ErrorGroup> result = new ArrayList<>(groups.size());
+        for (Group group : groups.values()) {
+            result.add(new ErrorGroup(group.key, group.violation, group.count, group.rows.isEmpty()
+                    ? null
+                    : Base64.getEncoder().encodeToString(group.rows.toByteArray())));
+        }
+        return result;
+    }
+
+    private static final class Group {
+        private final String key;
+        private final String violation;
+        private final BitSet rows = new BitSet();
+        private int count;
+
+        private Group(final ValidationError error) {
+            this.key = error.getKey();
+            this.violation = error.getViolation();
+        }
+    }
+}
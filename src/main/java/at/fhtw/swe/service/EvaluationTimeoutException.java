@@ -0,0 +1,11 @@
+package at.fhtw.swe.service;
+
+/**
+ * Thrown when a jsonata evaluation runs out of its own time budget or of the time left to its validation.
+ */
+public class EvaluationTimeoutException extends RuntimeException {
+
+    public EvaluationTimeoutException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,276 @@
+package at.fhtw.swe.service;
+
+import static com.jayway.jsonpath.Criteria.where;
+import static com.jayway.jsonpath.Filter.filter;
+
+import at.fhtw.swe.model.CompiledComponent;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ValidationRules;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Turns a form template into a {@link CompiledForm}: every component with validations, its grid membership and the
+ * validation instructions resolved for both modes.
+ */
+public class FormCompiler {
+    private static final String TYPE_GRID = "grid";
+    private static final String TYPE_DATETIME = "datetime";
+    private static final String COMPONENT_KEY = "id";
+    private static final String TYPE_KEY = "type";
+    private static final String COMPONENT_TAG = "components";
+    private static final String VALIDATE_KEY = "validate";
+    private static final String CUSTOM_KEY = "custom";
+    private static final String EXTERNAL_KEY = "external";
+    private static final String INTERNAL_KEY = "internal";
+    private static final String JSONATA_KEY = "jsonata";
+    private static final String REQUIRED_KEY = "required";
+    private static final String MIN_LENGTH_KEY = "minLength";
+    private static final String MAX_LENGTH_KEY = "maxLength";
+    private static final String PATTERN_KEY = "pattern";
+    private static final String MIN_KEY = "min";
+    private static final String MAX_KEY = "max";
+    private static final String DATE_MIN_KEY = "minDate";
+    private static final String DATE_MAX_KEY = "maxDate";
+    private static final String ROW_NUM_PLACEHOLER = "@eval:rownum@";
+    static final String CURRENT_DATE_PLACEHOLER = "@date:now@";
+    private static final String ROW_NUM_BINDING = "$rownum";
+    private static final String CURRENT_DATE_BINDING = "$now";
+    private static final String GRID_INPUT_KEYS_QUERY =
+            "$.." + COMPONENT_TAG + "[?].." + COMPONENT_TAG + "[?]." + COMPONENT_KEY;
+    private static final String INPUTS_TO_VALIDATE_QUERY = "$.." + COMPONENT_TAG + "[?]";
+
+    private final transient PatternCache patternCache;
+    private final transient Configuration configuration = Configuration.builder()
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build();
+    private final transient JsonPath getInputsToValidate = JsonPath.compile(INPUTS_TO_VALIDATE_QUERY, filter(where("@." + VALIDATE_KEY).exists(true)));
+    private final transient JsonPath getInputKeysInsideGrids = JsonPath.compile(GRID_INPUT_KEYS_QUERY, filter(where("@." + TYPE_KEY).eq(TYPE_GRID)), filter(where("@." + VALIDATE_KEY).exists(true)));
+
+    public FormCompiler(final PatternCache patternCache) {
+        this.patternCache = patternCache;
+    }
+
+    public CompiledForm compile(final String form, final String hash) {
+        final DocumentContext formContext = JsonPath.using(configuration).parse(form);
+        final ArrayNode inputsWithValidations = formContext.read(getInputsToValidate, ArrayNode.class);
+        final Set<String> gridInputs = getInputKeysInsideGrids(formContext);
+        final List<CompiledComponent> components = new ArrayList<>(inputsWithValidations.size());
+        Set<String> jsonataFields = new HashSet<>();
+        boolean timeDependentInternal = false;
+        boolean timeDependentExternal = false;
+
+        for (JsonNode input : inputsWithValidations) {
+            final String id = input.get(COMPONENT_KEY).asText();
+            final String type = input.path(TYPE_KEY).asText();
+            final JsonNode instruction = input.get(VALIDATE_KEY);
+            final CompiledComponent component = new CompiledComponent(
+                    id,
+                    type,
+                    gridInputs.contains(id),
+                    compileRules(instruction, type, true),
+                    compileRules(instruction, type, false));
+
+            components.add(component);
+            jsonataFields = addJsonataFields(jsonataFields, component.getRules(true));
+            jsonataFields = addJsonataFields(jsonataFields, component.getRules(false));
+            timeDependentInternal |= isTimeDependent(component.getRules(true));
+            timeDependentExternal |= isTimeDependent(component.getRules(false));
+        }
+
+        return new CompiledForm(hash, components, jsonataFields, timeDependentInternal, timeDependentExternal);
+    }
+
+    private boolean isTimeDependent(final ValidationRules rules) {
+        return rules.getJsonata() != null
+                && (JsonataDependencies.usesVariable(rules.getJsonata(), CURRENT_DATE_BINDING.substring(1))
+                || rules.getJsonata().contains(CURRENT_DATE_PLACEHOLER));
+    }
+
+    private Set<String> addJsonataFields(final Set<String> jsonataFields, final ValidationRules rules) {
+        if (jsonataFields == null || rules.getJsonata() == null) {
+            return jsonataFields;
+        }
+        return JsonataDependencies.fieldsOf(rules.getJsonata())
+                .map(fields -> {
+                    jsonataFields.addAll(fields);
+                    return jsonataFields;
+                })
+                .orElse(null);
+    }
+
+    private Set<String> getInputKeysInsideGrids(final DocumentContext formContext) {
+        final Set<String> keys = new HashSet<>();
+        formContext.read(getInputKeysInsideGrids, ArrayNode.class)
+                .forEach(key -> keys.add(key.asText()));
+        return keys;
+    }
+
+    private ValidationRules compileRules(final JsonNode instruction, final String type, final boolean internal) {
+        final ValidationRules.Builder rules = ValidationRules.builder()
+                .required(extractValidationInstruction(instruction, REQUIRED_KEY, internal)
+                        .map(JsonNode::asBoolean)
+                        .orElse(false))
+                .pattern(extractValidationInstruction(instruction, PATTERN_KEY, internal)
+                        .map(JsonNode::asText)
+                        .map(patternCache::get)
+                        .orElse(null))
+                .jsonata(extractValidationInstruction(instruction, JSONATA_KEY, internal)
+                        .map(JsonNode::asText)
+                        .map(this::bindPlaceholders)
+                        .orElse(null));
+
+        if (instruction.has(MIN_KEY)) {
+            rules.min(extractValidationInstruction(instruction, MIN_KEY, internal)
+                    .map(JsonNode::asDouble)
+                    .orElse(null));
+        }
+        if (instruction.has(MAX_KEY)) {
+            rules.max(extractValidationInstruction(instruction, MAX_KEY, internal)
+                    .map(JsonNode::asDouble)
+                    .orElse(null));
+        }
+
+        if (TYPE_GRID.equals(type)) {
+            // the row count of a grid is always taken from the external instructions
+            rules.minRowCount(Optional.ofNullable(instruction.get(MIN_LENGTH_KEY))
+                    .map(JsonNode::asInt)
+                    .orElse(null))
+                    .maxRowCount(Optional.ofNullable(instruction.get(MAX_LENGTH_KEY))
+                            .map(JsonNode::asInt)
+                            .orElse(null));
+        } else if (TYPE_DATETIME.equals(type)) {
+            rules.minDate(extractValidationInstruction(instruction, DATE_MIN_KEY, internal)
+                    .map(JsonNode::asText)
+                    .map(Instant::parse)
+                    .orElse(null))
+                    .maxDate(extractValidationInstruction(instruction, DATE_MAX_KEY, internal)
+                            .map(JsonNode::asText)
+                            .map(Instant::parse)
+                            .orElse(null));
+        } else {
+            rules.minLength(extractValidationInstruction(instruction, MIN_LENGTH_KEY, internal)
+                    .map(JsonNode::asInt)
+                    .orElse(null))
+                    .maxLength(extractValidationInstruction(instruction, MAX_LENGTH_KEY, internal)
+                            .map(JsonNode::asInt)
+                            .orElse(null));
+        }
+
+        return rules.build();
+    }
+
+    /**
+     * Replaces the textual placeholders by jsonata variables, so the expression stays the same for every row and
+     * every request. The current date is mostly used as a quoted string literal of its own, which becomes the bare
+     * variable. A placeholder embedded in a longer literal is left in place; the {@link JsonataEngine} substitutes the
+     * date into the text, as before.
+     */
+    private String bindPlaceholders(final String jsonataExpression) {
+        return bindCurrentDate(jsonataExpression).replace(ROW_NUM_PLACEHOLER, ROW_NUM_BINDING);
+    }
+
+    private static String bindCurrentDate(final String jsonataExpression) {
+        if (!jsonataExpression.contains(CURRENT_DATE_PLACEHOLER)) {
+            return jsonataExpression;
+        }
+        final StringBuilder bound = new StringBuilder(jsonataExpression.length());
+        int index = 0;
+        while (index < jsonataExpression.length()) {
+            final int start = nextLiteral(jsonataExpression, index);
+            bound.append(jsonataExpression.substring(index, start)
+                    .replace(CURRENT_DATE_PLACEHOLER, CURRENT_DATE_BINDING));
+            if (start == jsonataExpression.length()) {
+                break;
+            }
+            final int end = endOfLiteral(jsonataExpression, start);
+            if (end - start == CURRENT_DATE_PLACEHOLER.length() + 2
+                    && jsonataExpression.startsWith(CURRENT_DATE_PLACEHOLER, start + 1)) {
+                bound.append(CURRENT_DATE_BINDING);
+            } else {
+                bound.append(jsonataExpression, start, end);
+            }
+            index = end;
+        }
+        return bound.toString();
+    }
+
+    /**
+     * @return the index of the next opening quote of a string literal, the length of the expression if there is none
+     */
+    private static int nextLiteral(final String jsonataExpression, final int from) {
+        for (int index = from; index < jsonataExpression.length(); index++) {
+            final char character = jsonataExpression.charAt(index);
+            if (character == '"' || character == '\'') {
+                return index;
+            }
+        }
+        return jsonataExpression.length();
+    }
+
+    /**
+     * @return the index after the closing quote of the literal, the length of the expression if it is not closed
+     */
+    private static int endOfLiteral(final String jsonataExpression, final int start) {
+        final char quote = jsonataExpression.charAt(start);
+        for (int index = start + 1; index < jsonataExpression.length(); index++) {
+            final char character = jsonataExpression.charAt(index);
+            if (character == '\\') {
+                index++;
+            } else if (character == quote) {
+                return index + 1;
+            }
+        }
+        return jsonataExpression.length();
+    }
+
+    private Optional<JsonNode> extractValidationInstruction(
+            final JsonNode validationInstruction, final String validationKey, final boolean internal) {
+        return internal ? Optional.ofNullable(
+                getInternalValidations(validationInstruction, validationKey))
+                : Optional.ofNullable(
+                getExternalValidations(validationInstruction, validationKey));
+    }
+
+    private JsonNode getExternalValidations(
+            final JsonNode validationInstruction, final String validationKey) {
+        if (JSONATA_KEY.equals(validationKey)) {
+            final JsonNode customTag = validationInstruction.get(CUSTOM_KEY);
+            if (customTag == null) {
+                return null;
+            }
+            final JsonNode externalTag = customTag.get(EXTERNAL_KEY);
+            if (externalTag != null) {
+                return externalTag.get(JSONATA_KEY);
+            } else if (!customTag.has(INTERNAL_KEY)) {
+                // this is a legacy support if custom tag only contains jsonata-string. // TODO: remove this
+                return customTag;
+            }
+        } else {
+            return validationInstruction.get(validationKey);
+        }
+
+        return null;
+    }
+
+    private JsonNode getInternalValidations(
+            final JsonNode validationInstruction, final String validationKey) {
+        return Optional.ofNullable(validationInstruction.get(CUSTOM_KEY))
+                .map(customTag -> customTag.get(INTERNAL_KEY))
+                .map(internalTag -> internalTag.get(validationKey))
+                .orElse(null);
+    }
+}
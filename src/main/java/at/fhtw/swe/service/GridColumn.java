@@ -0,0 +1,146 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.DataPath;
+import at.fhtw.swe.model.GuardedPattern;
+import at.fhtw.swe.model.ValidationRules;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The cells of one grid component in a range of rows, extracted once into arrays. Every native rule is checked as a
+ * single loop over the whole column, instead of running all rules cell by cell. The loops only mark the rows that
+ * violate a rule; those rows are validated again by the {@link SingleValueValidator} to produce their errors, so the
+ * errors are exactly those of the cell by cell validation, while valid rows, the common case, never build them. The
+ * result of the pattern is kept per cell and handed on, so a regex runs at most once per cell, and a timeout uses its
+ * budget only once.
+ */
+final class GridColumn {
+    private final int size;
+    private final JsonNode[] values;
+    private final String[] texts;
+    private final int[] rows;
+    private final DataPath[] paths;
+    private GuardedPattern.Match[] matches;
+
+    GridColumn(final List<DataIndex.IndexedValue> cells, final int from, final int to) {
+        this.size = to - from;
+        this.values = new JsonNode[size];
+        this.texts = new String[size];
+        this.rows = new int[size];
+        this.paths = new DataPath[size];
+        for (int index = 0; index < size; index++) {
+            final DataIndex.IndexedValue cell = cells.get(from + index);
+            values[index] = cell.getValue();
+            texts[index] = cell.getValue() == null ? null : cell.getValue().asText();
+            rows[index] = cell.getRow() != null ? cell.getRow() : from + index;
+            paths[index] = cell.getPath();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    JsonNode value(final int index) {
+        return values[index];
+    }
+
+    int row(final int index) {
+        return rows[index];
+    }
+
+    DataPath path(final int index) {
+        return paths[index];
+    }
+
+    int[] rows() {
+        return rows;
+    }
+
+    /**
+     * @return the result of the pattern for the cell, {@code null} if {@link #violations} did not match it
+     */
+    GuardedPattern.Match match(final int index) {
+        return matches == null ? null : matches[index];
+    }
+
+    /**
+     * @return per cell, whether it violates at least one native rule
+     */
+    boolean[] violations(final ValidationRules rules, final ValidationMetrics metrics) {
+        final boolean[] violated = new boolean[size];
+
+        if (rules.isRequired()) {
+            final long start = metrics.start();
+            for (int index = 0; index < size; index++) {
+                violated[index] |= texts[index] == null || texts[index].isEmpty();
+            }
+            metrics.recordRule(ValidationMetrics.REQUIRED, start);
+        }
+        if (rules.getMinRowCount() != null || rules.getMaxRowCount() != null) {
+            final long start = metrics.start();
+            final int minRowCount = rules.getMinRowCount() != null ? rules.getMinRowCount() : Integer.MIN_VALUE;
+            final int maxRowCount = rules.getMaxRowCount() != null ? rules.getMaxRowCount() : Integer.MAX_VALUE;
+            for (int index = 0; index < size; index++) {
+                if (values[index] != null) {
+                    final int rowCount = values[index].size();
+                    violated[index] |= rowCount < minRowCount || rowCount > maxRowCount;
+                }
+            }
+            metrics.recordRule(ValidationMetrics.ROW_COUNT, start);
+        }
+        if (rules.getMinDate() != null || rules.getMaxDate() != null) {
+            final long start = metrics.start();
+            final Instant minDate = rules.getMinDate();
+            final Instant maxDate = rules.getMaxDate();
+            for (int index = 0; index < size; index++) {
+                if (texts[index] != null) {
+                    final Instant date = Instant.parse(texts[index]);
+                    violated[index] |= minDate != null && !date.isAfter(minDate)
+                            || maxDate != null && !date.isBefore(maxDate);
+                }
+            }
+            metrics.recordRule(ValidationMetrics.DATE, start);
+        }
+        if (rules.getMinLength() != null || rules.getMaxLength() != null) {
+            final long start = metrics.start();
+            final int minLength = rules.getMinLength() != null ? rules.getMinLength() : Integer.MIN_VALUE;
+            final int maxLength = rules.getMaxLength() != null ? rules.getMaxLength() : Integer.MAX_VALUE;
+            for (int index = 0; index < size; index++) {
+                if (texts[index] != null) {
+                    final int length = texts[index].length();
+                    violated[index] |= length < minLength || length > maxLength;
+                }
+            }
+            metrics.recordRule(ValidationMetrics.LENGTH, start);
+        }
+        if (rules.getPattern() != null) {
+            final long start = metrics.start();
+            final GuardedPattern pattern = rules.getPattern();
+            matches = new GuardedPattern.Match[size];
+            for (int index = 0; index < size; index++) {
+                if (texts[index] != null && !violated[index]) {
+                    matches[index] = pattern.matches(texts[index]);
+                    violated[index] = matches[index] != GuardedPattern.Match.MATCH;
+                }
+            }
+            metrics.recordRule(ValidationMetrics.PATTERN, start);
+        }
+        if (rules.getMin() != null || rules.getMax() != null) {
+            final long start = metrics.start();
+            final double min = rules.getMin() != null ? rules.getMin() : Double.NEGATIVE_INFINITY;
+            final double max = rules.getMax() != null ? rules.getMax() : Double.POSITIVE_INFINITY;
+            for (int index = 0; index < size; index++) {
+                if (values[index] != null) {
+                    final double number = values[index].asDouble();
+                    violated[index] |= !(number >= min) || !(number <= max);
+                }
+            }
+            metrics.recordRule(ValidationMetrics.NUMBER, start);
+        }
+
+        return violated;
+    }
+}
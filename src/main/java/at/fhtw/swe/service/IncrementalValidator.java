@@ -0,0 +1,537 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledComponent;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.DataPath;
+import at.fhtw.swe.model.FieldChange;
+import at.fhtw.swe.model.SessionState;
+import at.fhtw.swe.model.ValidationDelta;
+import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.model.ValidationRules;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Validation sessions for forms edited field by field. A session keeps the data and the errors of every rule scope,
+ * that is the native or the jsonata rules of one component in one grid cell. An edit replaces single values and only
+ * runs the scopes it affects: the native rules of the changed fields in their rows, and all rows of the jsonata rules
+ * that may read one of the changed fields according to {@link JsonataDependencies}. The answer is the difference in
+ * errors. An edit replacing an object or an array may move fields between rows, so it re-validates the whole form.
+ *
+ * Sessions idle for longer than {@code validator.sessions.idle-timeout-ms} expire. Beyond
+ * {@code validator.sessions.max-entries}, or {@code validator.sessions.max-weight} characters of data as opened, the
+ * least recently used sessions are dropped, as every session keeps its data as a tree on the heap.
+ */
+@Service
+public class IncrementalValidator {
+
+    private final transient Validator validator;
+    private final transient TemplateCache templateCache;
+    private final transient SingleValueValidator singleValueValidator;
+    private final transient ObjectMapper objectMapper = new ObjectMapper();
+    private final transient int maxEntries;
+    private final transient long maxWeight;
+    private final transient long idleTimeoutMillis;
+
+    private final transient LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private transient long weight;
+
+    public IncrementalValidator(
+            final Validator validator,
+            final TemplateCache templateCache,
+            final ValidationMetrics metrics,
+            @Value("${validator.sessions.max-entries:1024}") final int maxEntries,
+            @Value("${validator.sessions.max-weight:67108864}") final long maxWeight,
+            @Value("${validator.sessions.idle-timeout-ms:900000}") final long idleTimeoutMillis) {
+        this.validator = validator;
+        this.templateCache = templateCache;
+        this.singleValueValidator = new SingleValueValidator(metrics);
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Validates the whole form and keeps it for edits.
+     */
+    public SessionState open(final String form, final String formdata, final boolean internal) {
+        return open(templateCache.get(form), formdata, internal);
+    }
+
+    /**
+     * @throws SessionException if the data is not a JSON object
+     */
+    public SessionState open(final CompiledForm form, final String formdata, final boolean internal) {
+        final JsonNode data;
+        try {
+            data = objectMapper.readTree(formdata);
+        } catch (IOException e) {
+            throw new SessionException(SessionException.Reason.INVALID_DATA,
+                    "The form data could not be parsed: " + e.getMessage());
+        }
+        return open(form, data, formdata.length(), internal);
+    }
+
+    /**
+     * Validates the whole form and keeps it for edits. The session owns the data from now on.
+     *
+     * @param length the length of the data as submitted, the weight of the session
+     * @throws SessionException if the data is not an object
+     */
+    public SessionState open(final CompiledForm form, final JsonNode data, final long length, final boolean internal) {
+        if (data == null || !data.isObject()) {
+            throw new SessionException(SessionException.Reason.INVALID_DATA,
+                    "The form data of a session must be an object");
+        }
+
+        final Session session = new Session(form, (ObjectNode) data, length, internal);
+        session.validateAll(new HashMap<>());
+        final String id = UUID.randomUUID().toString();
+        put(id, session);
+        return new SessionState(id, session.form.getHash(), session.errors());
+    }
+
+    /**
+     * Applies the changes in order and re-runs the rules they affect. The changes are applied all or none: if one of
+     * them cannot be applied, the data is restored and the session stays as it was.
+     *
+     * @param templateHash the hash the client expects the session to have, not checked if {@code null}
+     * @throws SessionException if the session is unknown or expired, has another template, or a change does not
+     *                          address a field of the data
+     */
+    public ValidationDelta edit(final String id, final String templateHash, final List<FieldChange> changes) {
+        final Session session = get(id);
+        if (templateHash != null && !templateHash.equals(session.form.getHash())) {
+            throw new SessionException(SessionException.Reason.TEMPLATE_CHANGED,
+                    "The session validates the template " + session.form.getHash());
+        }
+        synchronized (session) {
+            return session.edit(changes == null ? Collections.emptyList() : changes);
+        }
+    }
+
+    public void close(final String id) {
+        synchronized (sessions) {
+            remove(id);
+        }
+    }
+
+    private Session get(final String id) {
+        synchronized (sessions) {
+            final Session session = sessions.get(id);
+            if (session == null || expired(session)) {
+                remove(id);
+                throw new SessionException(SessionException.Reason.NOT_FOUND, "No validation session " + id);
+            }
+            session.lastUsed = System.currentTimeMillis();
+            return session;
+        }
+    }
+
+    private void put(final String id, final Session session) {
+        synchronized (sessions) {
+            sessions.put(id, session);
+            weight += session.weight;
+
+            final Iterator<Session> eldest = sessions.values().iterator();
+            while (eldest.hasNext()) {
+                final Session candidate = eldest.next();
+                if (sessions.size() <= maxEntries && weight <= maxWeight && !expired(candidate)) {
+                    break;
+                }
+                weight -= candidate.weight;
+                eldest.remove();
+            }
+        }
+    }
+
+    private void remove(final String id) {
+        final Session session = sessions.remove(id);
+        if (session != null) {
+            weight -= session.weight;
+        }
+    }
+
+    private boolean expired(final Session session) {
+        return System.currentTimeMillis() - session.lastUsed > idleTimeoutMillis;
+    }
+
+    /**
+     * A field of the data: the object holding it, the index in the closest enclosing array and the path, as in
+     * {@link DataIndex}, and the field holding that array, the grid, {@code null} outside of arrays.
+     */
+    private static final class Occurrence {
+        private final ObjectNode parent;
+        private final Integer row;
+        private final String grid;
+        private final DataPath path;
+
+        private Occurrence(final ObjectNode parent, final Integer row, final String grid, final DataPath path) {
+            this.parent = parent;
+            this.row = row;
+            this.grid = grid;
+            this.path = path;
+        }
+    }
+
+    /**
+     * A field set by a change, with its value before, {@code null} if the change added it.
+     */
+    private static final class Assignment {
+        private final ObjectNode parent;
+        private final String key;
+        private final JsonNode previous;
+
+        private Assignment(final ObjectNode parent, final String key, final JsonNode previous) {
+            this.parent = parent;
+            this.key = key;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * The native or the jsonata rules of one component, for one cell of a grid, identified by its path, as the same
+     * key may be a column of several grids; {@code null} outside of grids.
+     */
+    private static final class Scope {
+        private final int component;
+        private final String cell;
+        private final boolean jsonata;
+
+        private Scope(final int component, final String cell, final boolean jsonata) {
+            this.component = component;
+            this.cell = cell;
+            this.jsonata = jsonata;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof Scope)) {
+                return false;
+            }
+            final Scope that = (Scope) object;
+            return component == that.component && Objects.equals(cell, that.cell) && jsonata == that.jsonata;
+        }
+
+        @Override
+        public int hashCode() {
+            return (component * 31 + Objects.hashCode(cell)) * 2 + (jsonata ? 1 : 0);
+        }
+    }
+
+    private final class Session {
+        private final CompiledForm form;
+        private final ObjectNode data;
+        private final long weight;
+        private final boolean internal;
+        /** per component, the fields its jsonata rule may read, {@code null} for the whole document */
+        private final List<Set<String>> dependencies = new ArrayList<>();
+
+        private Map<String, List<Occurrence>> occurrences;
+        private final Map<Scope, Set<ValidationError>> errorsByScope = new LinkedHashMap<>();
+        private final Map<ValidationError, Integer> counts = new HashMap<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Session(final CompiledForm form, final ObjectNode data, final long weight, final boolean internal) {
+            this.form = form;
+            this.data = data;
+            this.weight = weight;
+            this.internal = internal;
+            for (CompiledComponent component : form.getComponents()) {
+                final String jsonata = component.getRules(internal).getJsonata();
+                dependencies.add(jsonata == null
+                        ? Collections.emptySet()
+                        : JsonataDependencies.fieldsOf(jsonata).orElse(null));
+            }
+            this.occurrences = index(data);
+        }
+
+        private Set<ValidationError> errors() {
+            final Set<ValidationError> errors = new LinkedHashSet<>();
+            errorsByScope.values().forEach(errors::addAll);
+            return errors;
+        }
+
+        private ValidationDelta edit(final List<FieldChange> changes) {
+            final Map<String, Set<Integer>> changedRows = new HashMap<>();
+            final List<Assignment> applied = new ArrayList<>(changes.size());
+            boolean structural = false;
+            try {
+                for (FieldChange change : changes) {
+                    structural |= apply(change, applied);
+                    changedRows.computeIfAbsent(change.getKey(), key -> new HashSet<>()).add(change.getRow());
+                }
+            } catch (RuntimeException e) {
+                undo(applied);
+                throw e;
+            }
+
+            final Map<ValidationError, Boolean> touched = new LinkedHashMap<>();
+            if (structural) {
+                for (Scope scope : new ArrayList<>(errorsByScope.keySet())) {
+                    replace(scope, Collections.emptySet(), touched);
+                }
+                validateAll(touched);
+            } else {
+                JsonataData jsonataData = null;
+                for (int component = 0; component < form.getComponents().size(); component++) {
+                    final Set<Integer> rows = changedRows.get(form.getComponents().get(component).getKey());
+                    if (rows != null) {
+                        validateNative(component, rows, touched);
+                    }
+                    final Set<String> fields = dependencies.get(component);
+                    if (fields == null || !Collections.disjoint(fields, changedRows.keySet())) {
+                        if (jsonataData == null) {
+                            jsonataData = validator.parseData(data, null, System.nanoTime());
+                        }
+                        validateJsonata(component, jsonataData, touched);
+                    }
+                }
+            }
+
+            final Set<ValidationError> added = new LinkedHashSet<>();
+            final Set<ValidationError> removed = new LinkedHashSet<>();
+            touched.forEach((error, before) -> {
+                final boolean after = counts.containsKey(error);
+                if (before && !after) {
+                    removed.add(error);
+                } else if (!before && after) {
+                    added.add(error);
+                }
+            });
+            return new ValidationDelta(added, removed);
+        }
+
+        /**
+         * Restores the fields set by the changes applied so far, latest first, so the data matches the errors again.
+         */
+        private void undo(final List<Assignment> applied) {
+            for (int index = applied.size() - 1; index >= 0; index--) {
+                final Assignment assignment = applied.get(index);
+                if (assignment.previous == null) {
+                    assignment.parent.remove(assignment.key);
+                } else {
+                    assignment.parent.set(assignment.key, assignment.previous);
+                }
+            }
+            if (!applied.isEmpty()) {
+                occurrences = index(data);
+            }
+        }
+
+        /**
+         * @param applied receives the field set by the change and its previous value
+         * @return whether the change replaced or inserted an object or an array, which may move fields between rows
+         */
+        private boolean apply(final FieldChange change, final List<Assignment> applied) {
+            if (change.getKey() == null) {
+                throw new SessionException(SessionException.Reason.INVALID_CHANGE, "A change needs a key");
+            }
+            final JsonNode value = change.getValue() != null ? change.getValue() : NullNode.getInstance();
+
+            final Occurrence occurrence = find(change);
+            if (occurrence != null) {
+                final JsonNode previous = occurrence.parent.replace(change.getKey(), value);
+                applied.add(new Assignment(occurrence.parent, change.getKey(), previous));
+                if (previous.isContainerNode() || value.isContainerNode()) {
+                    occurrences = index(data);
+                    return true;
+                }
+                return false;
+            }
+
+            if (change.getRow() == null && (isGridKey(change.getKey()) || occurrences.containsKey(change.getKey()))) {
+                throw new SessionException(SessionException.Reason.INVALID_CHANGE,
+                        "The field " + change.getKey() + " is inside a grid, a change needs its row");
+            }
+            final ObjectNode parent = change.getRow() == null ? data : gridRow(change);
+            applied.add(new Assignment(parent, change.getKey(), parent.replace(change.getKey(), value)));
+            occurrences = index(data);
+            return value.isContainerNode();
+        }
+
+        /**
+         * @return the field addressed by the key, the row and, if given, the grid of the change, {@code null} if the
+         * data does not have it yet
+         * @throws SessionException if the key is a column of several grids at that row and the change names none
+         */
+        private Occurrence find(final FieldChange change) {
+            Occurrence found = null;
+            for (Occurrence occurrence : occurrences.getOrDefault(change.getKey(), Collections.emptyList())) {
+                if (Objects.equals(occurrence.row, change.getRow())
+                        && (change.getGrid() == null || change.getGrid().equals(occurrence.grid))) {
+                    if (found != null) {
+                        throw new SessionException(SessionException.Reason.INVALID_CHANGE, "The field "
+                                + change.getKey() + " is in several grids in row " + change.getRow()
+                                + ", a change needs its grid");
+                    }
+                    found = occurrence;
+                }
+            }
+            return found;
+        }
+
+        private boolean isGridKey(final String key) {
+            for (CompiledComponent component : form.getComponents()) {
+                if (component.isInsideGrid() && component.getKey().equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private ObjectNode gridRow(final FieldChange change) {
+            for (Occurrence occurrence : occurrences.getOrDefault(change.getGrid(), Collections.emptyList())) {
+                final JsonNode rows = occurrence.parent.get(change.getGrid());
+                if (rows.isArray() && rows.path(change.getRow()).isObject()) {
+                    return (ObjectNode) rows.get(change.getRow());
+                }
+            }
+            throw new SessionException(SessionException.Reason.INVALID_CHANGE,
+                    "No field " + change.getKey() + " in row " + change.getRow() + " and no such row in the grid "
+                            + change.getGrid());
+        }
+
+        private void validateAll(final Map<ValidationError, Boolean> touched) {
+            final JsonataData jsonataData = validator.parseData(data, null, System.nanoTime());
+            for (int component = 0; component < form.getComponents().size(); component++) {
+                validateNative(component, null, touched);
+                validateJsonata(component, jsonataData, touched);
+            }
+        }
+
+        /**
+         * @param rows the rows to validate, as addressed by the changes, {@code null} for all
+         */
+        private void validateNative(
+                final int index, final Set<Integer> rows, final Map<ValidationError, Boolean> touched) {
+            final CompiledComponent component = form.getComponents().get(index);
+            final ValidationRules rules = component.getRules(internal);
+            final List<Occurrence> cells = occurrences.getOrDefault(component.getKey(), Collections.emptyList());
+
+            if (!component.isInsideGrid()) {
+                final Occurrence first = cells.isEmpty() ? null : cells.get(0);
+                replace(new Scope(index, null, false), singleValueValidator.validateSingleValue(
+                        validator.validationValue(
+                                component,
+                                rules,
+                                first == null ? null : first.parent.get(component.getKey()),
+                                null,
+                                first == null ? null : first.path)), touched);
+                return;
+            }
+            for (int cell = 0; cell < cells.size(); cell++) {
+                final Occurrence occurrence = cells.get(cell);
+                if (rows == null || rows.contains(occurrence.row)) {
+                    final int row = occurrence.row != null ? occurrence.row : cell;
+                    final Set<ValidationError> errors = singleValueValidator.validateSingleValue(
+                            validator.validationValue(
+                                    component, rules, occurrence.parent.get(component.getKey()), row, occurrence.path));
+                    replace(new Scope(index, occurrence.path.toString(), false), errors, touched);
+                }
+            }
+        }
+
+        private void validateJsonata(
+                final int index, final JsonataData jsonataData, final Map<ValidationError, Boolean> touched) {
+            final CompiledComponent component = form.getComponents().get(index);
+            final ValidationRules rules = component.getRules(internal);
+            if (rules.getJsonata() == null) {
+                return;
+            }
+
+            final List<Occurrence> cells = occurrences.getOrDefault(component.getKey(), Collections.emptyList());
+            if (!component.isInsideGrid()) {
+                final DataPath path = cells.isEmpty() ? null : cells.get(0).path;
+                replace(new Scope(index, null, true),
+                        jsonataErrors(jsonataData, component, rules, null, path), touched);
+                return;
+            }
+            for (int cell = 0; cell < cells.size(); cell++) {
+                final Occurrence occurrence = cells.get(cell);
+                final int row = occurrence.row != null ? occurrence.row : cell;
+                replace(new Scope(index, occurrence.path.toString(), true),
+                        jsonataErrors(jsonataData, component, rules, row, occurrence.path), touched);
+            }
+        }
+
+        private Set<ValidationError> jsonataErrors(
+                final JsonataData jsonataData,
+                final CompiledComponent component,
+                final ValidationRules rules,
+                final Integer row,
+                final DataPath path) {
+            return validator.checkJsonnata(jsonataData, validator.validationValue(component, rules, null, row, path))
+                    .map(Collections::singleton)
+                    .orElse(Collections.emptySet());
+        }
+
+        /**
+         * Replaces the errors of a scope, remembering for every error it touches whether it was reported before.
+         */
+        private void replace(
+                final Scope scope, final Set<ValidationError> errors, final Map<ValidationError, Boolean> touched) {
+            final Set<ValidationError> previous = errorsByScope.remove(scope);
+            if (previous != null) {
+                for (ValidationError error : previous) {
+                    touched.putIfAbsent(error, true);
+                    counts.computeIfPresent(error, (key, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+            if (!errors.isEmpty()) {
+                errorsByScope.put(scope, errors);
+                for (ValidationError error : errors) {
+                    touched.putIfAbsent(error, counts.containsKey(error));
+                    counts.merge(error, 1, Integer::sum);
+                }
+            }
+        }
+
+        private Map<String, List<Occurrence>> index(final ObjectNode root) {
+            final Map<String, List<Occurrence>> index = new HashMap<>();
+            walk(root, null, null, DataPath.ROOT, index);
+            return index;
+        }
+
+        private void walk(
+                final JsonNode node,
+                final Integer row,
+                final String grid,
+                final DataPath path,
+                final Map<String, List<Occurrence>> index) {
+            if (node.isObject()) {
+                final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    final Map.Entry<String, JsonNode> field = fields.next();
+                    final DataPath fieldPath = path.field(field.getKey());
+                    index.computeIfAbsent(field.getKey(), key -> new ArrayList<>(1))
+                            .add(new Occurrence((ObjectNode) node, row, grid, fieldPath));
+                    walk(field.getValue(), row, field.getValue().isArray() ? field.getKey() : grid, fieldPath, index);
+                }
+            } else if (node.isArray()) {
+                for (int position = 0; position < node.size(); position++) {
+                    walk(node.get(position), position, grid, path.element(position), index);
+                }
+            }
+        }
+    }
+}
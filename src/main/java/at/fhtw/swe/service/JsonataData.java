@@ -0,0 +1,69 @@
+package at.fhtw.swe.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Form data of one request as seen by jsonata. Every script engine needs its own copy of the data, which is converted
+ * the first time the engine evaluates an expression against it; the native engine reads the Jackson tree, which is
+ * parsed on first use if only the text was given. All expressions of a request see the same
+ * {@code $now}, and share the time budget of the request.
+ */
+public final class JsonataData {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private transient volatile JsonNode tree;
+    private final transient String json;
+    private final transient String now = Instant.now().truncatedTo(ChronoUnit.MILLIS).toString();
+    private final transient Map<JsonataEngine.Context, Object> converted = new ConcurrentHashMap<>(2);
+    private transient volatile boolean deadline;
+    private transient volatile long deadlineNanos;
+
+    JsonataData(final JsonNode tree, final String json) {
+        this.tree = tree;
+        this.json = json;
+    }
+
+    /**
+     * Limits the time left to all evaluations against this data, as {@link System#nanoTime()}.
+     */
+    void setDeadlineNanos(final long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        this.deadline = true;
+    }
+
+    boolean hasDeadline() {
+        return deadline;
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    String getNow() {
+        return now;
+    }
+
+    JsonNode getTree() {
+        JsonNode parsed = tree;
+        if (parsed == null) {
+            try {
+                parsed = OBJECT_MAPPER.readTree(json);
+            } catch (IOException e) {
+                throw new RuntimeException("Error when parsing json input", e);
+            }
+            tree = parsed;
+        }
+        return parsed;
+    }
+
+    Object in(final JsonataEngine.Context context) {
+        return converted.computeIfAbsent(context, engine -> engine.parse(json != null ? json : tree.toString()));
+    }
+}
@@ -0,0 +1,108 @@
+package at.fhtw.swe.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Conservative lexical analysis of the field names a jsonata expression may read. Every bare name of the expression
+ * is reported, whether it is the first step of a path or not, so the result is a superset of the fields the
+ * expression depends on. Expressions navigating the document without naming fields (root and context references,
+ * wildcards, descendants) are reported as depending on the whole document.
+ */
+public final class JsonataDependencies {
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "and", "or", "in", "true", "false", "null", "function"));
+
+    private JsonataDependencies() {
+    }
+
+    /**
+     * @return the field names the expression may read, or empty when it may read any part of the document
+     */
+    public static Optional<Set<String>> fieldsOf(final String expression) {
+        final Set<String> fields = new HashSet<>();
+        int position = 0;
+
+        while (position < expression.length()) {
+            final char current = expression.charAt(position);
+
+            if (current == '"' || current == '\'') {
+                position = skipString(expression, position);
+            } else if (current == '/' && expression.startsWith("/*", position)) {
+                final int end = expression.indexOf("*/", position + 2);
+                position = end < 0 ? expression.length() : end + 2;
+            } else if (current == '`') {
+                final int end = expression.indexOf('`', position + 1);
+                if (end < 0) {
+                    return Optional.empty();
+                }
+                fields.add(expression.substring(position + 1, end));
+                position = end + 1;
+            } else if (current == '*' || current == '%') {
+                return Optional.empty();
+            } else if (current == '$') {
+                final int end = skipName(expression, position + 1);
+                if (end == position + 1) {
+                    // $ is the context and $$ the root of the document
+                    return Optional.empty();
+                }
+                position = end;
+            } else if (isNameStart(current)) {
+                final int end = skipName(expression, position);
+                final String name = expression.substring(position, end);
+                if (!KEYWORDS.contains(name)) {
+                    fields.add(name);
+                }
+                position = end;
+            } else {
+                position++;
+            }
+        }
+
+        return Optional.of(Collections.unmodifiableSet(fields));
+    }
+
+    /**
+     * @return whether the expression may read the variable, {@code name} without the {@code $}
+     */
+    public static boolean usesVariable(final String expression, final String name) {
+        int position = expression.indexOf('$');
+        while (position >= 0) {
+            final int end = skipName(expression, position + 1);
+            if (expression.regionMatches(position + 1, name, 0, name.length()) && end == position + 1 + name.length()) {
+                return true;
+            }
+            position = expression.indexOf('$', end);
+        }
+        return false;
+    }
+
+    private static int skipString(final String expression, final int start) {
+        final char quote = expression.charAt(start);
+        int position = start + 1;
+        while (position < expression.length() && expression.charAt(position) != quote) {
+            position += expression.charAt(position) == '\\' ? 2 : 1;
+        }
+        return position + 1;
+    }
+
+    private static int skipName(final String expression, final int start) {
+        int position = start;
+        while (position < expression.length() && isNamePart(expression.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isNameStart(final char character) {
+        return Character.isLetter(character) || character == '_';
+    }
+
+    private static boolean isNamePart(final char character) {
+        return Character.isLetterOrDigit(character) || character == '_';
+    }
+}
@@ -1,67 +1,538 @@
 package at.fhtw.swe.service;
 
+import at.fhtw.swe.model.CacheStatistics;
+import at.fhtw.swe.model.PoolStatistics;
+import at.fhtw.swe.service.jsonata.Expression;
+import at.fhtw.swe.service.jsonata.JsonataException;
+import at.fhtw.swe.service.jsonata.JsonataTimeoutException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 /**
  * Run JSONATA-runtime on jvm-nashorn
  * https://stackoverflow.com/questions/40416032/how-can-i-use-jsonata-in-java
+ *
+ * A script engine is not thread-safe, so every evaluation borrows one of a pool of isolated engines. The pool grows
+ * lazily up to its size and hands out the most recently returned engine first, which keeps data already converted
+ * for an engine hot. Each engine keeps a LRU of the expressions it has compiled; the placeholders of the templates
+ * are passed as the bindings {@code $now} and {@code $rownum}, so an expression text is the same for every row and
+ * every request.
+ *
+ * With {@code jsonata.engine=native} expressions are evaluated by the Java implementation in
+ * {@link at.fhtw.swe.service.jsonata} instead. Expressions it does not support still go to the script engines, which
+ * are then only started when the first such expression is evaluated. An expression evaluated more often than
+ * {@code jsonata.native.compile-threshold} times is compiled to closures, which saves interpreting its syntax tree.
+ *
+ * Every evaluation has a time budget, {@code jsonata.evaluation-budget-ms}, shortened to the time left to its
+ * validation. The native engine checks the budget while it iterates over the data. A script engine cannot be
+ * interrupted, so with a budget it runs the evaluation on one of a fixed set of threads, one per engine that may exist;
+ * when the budget runs out the caller gives up, and the engine is quarantined: it is dropped from the pool once the
+ * evaluation ends. Up to {@code jsonata.pool.max-quarantined} quarantined engines are replaced right away, further
+ * ones keep counting against the pool size until their evaluation ends.
  */
 public class JsonataEngine {
 
     private static final Logger LOG = LoggerFactory.getLogger(JsonataEngine.class);
 
-    private final transient ScriptEngine engine;
-    private final transient Invocable inv;
+    private static final String SCRIPT_ENGINE = "script";
+    private static final String NATIVE_ENGINE = "native";
+
+    private static final String FUNCTIONS =
+            "function __parseData(data) { return JSON.parse(data); }\n"
+                    + "function __compile(expression) { return jsonata(expression); }\n"
+                    + "function __evaluate(expression, data, now, rownum) {\n"
+                    + "  var bindings = { now: now };\n"
+                    + "  if (rownum !== null && rownum !== undefined) { bindings.rownum = rownum; }\n"
+                    + "  return JSON.stringify(expression.evaluate(data, bindings));\n"
+                    + "}\n"
+                    + "function __evaluateRows(expression, data, now, rownums) {\n"
+                    + "  var results = [];\n"
+                    + "  for (var i = 0; i < rownums.length; i++) {\n"
+                    + "    var result = JSON.stringify(expression.evaluate(data, { now: now, rownum: rownums[i] }));\n"
+                    + "    results.push(result === undefined ? null : result);\n"
+                    + "  }\n"
+                    + "  return Java.to(results, 'java.lang.String[]');\n"
+                    + "}";
+
+    private final transient ScriptEngineManager factory = new ScriptEngineManager();
+    private final transient LinkedBlockingDeque<Context> idle = new LinkedBlockingDeque<>();
+    private final transient AtomicInteger created = new AtomicInteger();
+    private final transient AtomicInteger replacements;
+    private final transient int poolSize;
+    private final transient long acquireTimeoutMillis;
+    private final transient int expressionCacheSize;
+    private final transient int compileThreshold;
+    private final transient long evaluationBudgetNanos;
+    private final transient ExecutorService evaluations;
+    private final transient boolean nativeEngine;
+    private final transient Map<String, Optional<Expression>> nativeExpressions =
+            new LinkedHashMap<String, Optional<Expression>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Optional<Expression>> eldest) {
+                    if (size() > expressionCacheSize) {
+                        expressionEvictions.incrementAndGet();
+                        expressionsCached.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    private final transient AtomicInteger waiting = new AtomicInteger();
+    private final transient AtomicLong acquisitions = new AtomicLong();
+    private final transient AtomicLong timeouts = new AtomicLong();
+    private final transient AtomicLong quarantined = new AtomicLong();
+    private final transient AtomicLong waitNanos = new AtomicLong();
+    private final transient AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final transient AtomicLong expressionHits = new AtomicLong();
+    private final transient AtomicLong expressionMisses = new AtomicLong();
+    private final transient AtomicLong expressionEvictions = new AtomicLong();
+    private final transient AtomicInteger expressionsCached = new AtomicInteger();
+
+    public JsonataEngine(
+            @Value("${jsonata.engine:script}") final String engine,
+            @Value("${jsonata.pool.size:0}") final int poolSize,
+            @Value("${jsonata.pool.acquire-timeout-ms:5000}") final long acquireTimeoutMillis,
+            @Value("${jsonata.expression-cache.max-entries:512}") final int expressionCacheSize,
+            @Value("${jsonata.native.compile-threshold:100}") final int compileThreshold,
+            @Value("${jsonata.evaluation-budget-ms:5000}") final long evaluationBudgetMillis,
+            @Value("${jsonata.pool.max-quarantined:0}") final int maxQuarantined) {
+        this.poolSize = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.replacements = new AtomicInteger(maxQuarantined > 0 ? maxQuarantined : this.poolSize);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.expressionCacheSize = expressionCacheSize;
+        this.compileThreshold = compileThreshold;
+        this.evaluationBudgetNanos = TimeUnit.MILLISECONDS.toNanos(evaluationBudgetMillis);
+        final AtomicInteger threadCount = new AtomicInteger();
+        // every engine, in the pool or quarantined, runs at most one evaluation, so evaluations never queue
+        this.evaluations = Executors.newFixedThreadPool(this.poolSize + replacements.get(), runnable -> {
+            final Thread thread = new Thread(runnable, "jsonata-evaluation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!SCRIPT_ENGINE.equals(engine) && !NATIVE_ENGINE.equals(engine)) {
+            throw new IllegalArgumentException("jsonata.engine must be " + SCRIPT_ENGINE + " or " + NATIVE_ENGINE);
+        }
+        this.nativeEngine = NATIVE_ENGINE.equals(engine);
+
+        if (!nativeEngine) {
+            // the first engine is built eagerly so a broken jsonata runtime fails the startup
+            created.incrementAndGet();
+            idle.add(newContext());
+        }
+    }
+
+    public JsonataData parseData(final String data) {
+        return new JsonataData(null, data);
+    }
+
+    /**
+     * Wraps already parsed data. The text of the data is optional, it merely saves serializing the tree again once
+     * an engine needs its own copy.
+     */
+    public JsonataData parseData(final JsonNode data, final String text) {
+        return new JsonataData(data, text);
+    }
+
+    public String validate(final JsonataData data, final String compiledExpression, final Integer rownum) {
+        final String jsonataExpression = withCurrentDate(data, compiledExpression);
+        if (nativeEngine) {
+            final Optional<Expression> expression = nativeExpression(jsonataExpression);
+            if (expression.isPresent()) {
+                return evaluateNative(expression.get(), data, jsonataExpression, rownum);
+            }
+        }
+
+        return evaluateScript(budgetNanos(data, 1),
+                context -> context.evaluate(data.in(context), jsonataExpression, data.getNow(), rownum));
+    }
+
+    /**
+     * Evaluates a row-relative expression for many rows at once, with one engine acquisition and one call into the
+     * script engine for all of them.
+     *
+     * @return the results in the order of the row numbers
+     */
+    public String[] validateRows(final JsonataData data, final String compiledExpression, final int[] rownums) {
+        final String jsonataExpression = withCurrentDate(data, compiledExpression);
+        if (nativeEngine) {
+            final Optional<Expression> expression = nativeExpression(jsonataExpression);
+            if (expression.isPresent()) {
+                final String[] results = new String[rownums.length];
+                for (int index = 0; index < rownums.length; index++) {
+                    results[index] = evaluateNative(expression.get(), data, jsonataExpression, rownums[index]);
+                }
+                return results;
+            }
+        }
+
+        return evaluateScript(budgetNanos(data, rownums.length),
+                context -> context.evaluateRows(data.in(context), jsonataExpression, data.getNow(), rownums));
+    }
+
+    /**
+     * Substitutes the date of the data for a {@code @date:now@} the {@link FormCompiler} could not bind to
+     * {@code $now}, because it is embedded in a longer string literal. Such an expression is compiled per request.
+     */
+    private static String withCurrentDate(final JsonataData data, final String jsonataExpression) {
+        return jsonataExpression.contains(FormCompiler.CURRENT_DATE_PLACEHOLER)
+                ? jsonataExpression.replace(FormCompiler.CURRENT_DATE_PLACEHOLER, data.getNow())
+                : jsonataExpression;
+    }
+
+    /**
+     * Compiles an expression without evaluating it. Expressions the native parser does not support are compiled by
+     * the script engine, the reference for the syntax.
+     *
+     * @throws IllegalArgumentException if the expression is not valid jsonata
+     */
+    public void checkSyntax(final String jsonataExpression) {
+        try {
+            Expression.parse(jsonataExpression, -1);
+            return;
+        } catch (JsonataException e) {
+            LOG.debug("{} is checked by the script engine: {}", jsonataExpression, e.getMessage());
+        }
+
+        final Context context = acquire();
+        try {
+            context.compile(jsonataExpression);
+        } catch (ScriptException | NoSuchMethodException e) {
+            throw new IllegalArgumentException("Invalid jsonata " + jsonataExpression + ": " + e.getMessage(), e);
+        } finally {
+            release(context);
+        }
+    }
+
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(
+                poolSize,
+                created.get(),
+                idle.size(),
+                waiting.get(),
+                quarantined.get(),
+                acquisitions.get(),
+                timeouts.get(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    public CacheStatistics getExpressionStatistics() {
+        return new CacheStatistics(
+                expressionHits.get(), expressionMisses.get(), expressionEvictions.get(), expressionsCached.get());
+    }
+
+    private Optional<Expression> nativeExpression(final String jsonataExpression) {
+        synchronized (nativeExpressions) {
+            final Optional<Expression> expression = nativeExpressions.get(jsonataExpression);
+            if (expression != null) {
+                expressionHits.incrementAndGet();
+                return expression;
+            }
+        }
+
+        expressionMisses.incrementAndGet();
+        Optional<Expression> expression;
+        try {
+            expression = Optional.of(Expression.parse(jsonataExpression, compileThreshold));
+        } catch (JsonataException e) {
+            LOG.warn("{} is evaluated by the script engine: {}", jsonataExpression, e.getMessage());
+            expression = Optional.empty();
+        }
+        synchronized (nativeExpressions) {
+            if (nativeExpressions.put(jsonataExpression, expression) == null) {
+                expressionsCached.incrementAndGet();
+            }
+        }
+        return expression;
+    }
+
+    private String evaluateNative(
+            final Expression expression, final JsonataData data, final String jsonataExpression, final Integer rownum) {
+        final Map<String, JsonNode> bindings = new HashMap<>(4);
+        bindings.put("now", TextNode.valueOf(data.getNow()));
+        if (rownum != null) {
+            bindings.put("rownum", IntNode.valueOf(rownum));
+        }
+        try {
+            return Expression.stringify(expression.evaluate(data.getTree(), bindings, budgetNanos(data, 1)));
+        } catch (JsonataTimeoutException e) {
+            throw new EvaluationTimeoutException(jsonataExpression + " exceeded its time budget");
+        } catch (JsonataException e) {
+            LOG.error("the data doesn't match with {} pattern", jsonataExpression);
+            throw new RuntimeException("Jsonata could not be called", e);
+        }
+    }
+
+    /**
+     * @return the budget of the given number of evaluations, 0 if unlimited
+     * @throws EvaluationTimeoutException if the validation has no time left
+     */
+    private long budgetNanos(final JsonataData data, final int evaluationCount) {
+        long budget = evaluationBudgetNanos > 0 ? evaluationBudgetNanos * evaluationCount : 0;
+        if (data.hasDeadline()) {
+            final long remaining = data.getDeadlineNanos() - System.nanoTime();
+            if (remaining <= 0) {
+                throw new EvaluationTimeoutException("The validation exceeded its time budget");
+            }
+            budget = budget > 0 ? Math.min(budget, remaining) : remaining;
+        }
+        return budget;
+    }
+
+    private <T> T evaluateScript(final long budgetNanos, final Function<Context, T> evaluation) {
+        final Context context = acquire();
+        if (budgetNanos <= 0) {
+            try {
+                return evaluation.apply(context);
+            } finally {
+                release(context);
+            }
+        }
+
+        final Future<T> result;
+        try {
+            result = evaluations.submit(() -> {
+                try {
+                    return evaluation.apply(context);
+                } finally {
+                    release(context);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(context);
+            throw e;
+        }
+        try {
+            return result.get(budgetNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            quarantine(context);
+            throw new EvaluationTimeoutException("The evaluation exceeded its time budget");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            quarantine(context);
+            throw new EvaluationTimeoutException("Interrupted while waiting for the evaluation");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Jsonata could not be called", e.getCause());
+        }
+    }
+
+    private void release(final Context context) {
+        if (context.state.compareAndSet(Context.BUSY, Context.IDLE)) {
+            idle.offerFirst(context);
+        } else if (context.state.compareAndSet(Context.QUARANTINED, Context.RETIRED)) {
+            created.decrementAndGet();
+        } else if (context.state.compareAndSet(Context.REPLACED, Context.RETIRED)) {
+            replacements.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gives up on an engine still running an evaluation. It is not returned to the pool when the evaluation ends. If
+     * fewer than {@code jsonata.pool.max-quarantined} engines are replaced meanwhile, it no longer counts against the
+     * pool size, and a replacement may be created right away.
+     */
+    private void quarantine(final Context context) {
+        if (!context.state.compareAndSet(Context.BUSY, Context.QUARANTINED)) {
+            return;
+        }
+        quarantined.incrementAndGet();
+        if (!takeReplacement()) {
+            LOG.warn("a jsonata engine is quarantined until its evaluation ends, without a replacement");
+        } else if (context.state.compareAndSet(Context.QUARANTINED, Context.REPLACED)) {
+            created.decrementAndGet();
+            LOG.warn("a jsonata engine is quarantined until its evaluation ends");
+        } else {
+            // the evaluation ended meanwhile
+            replacements.incrementAndGet();
+        }
+    }
+
+    private boolean takeReplacement() {
+        int count;
+        do {
+            count = replacements.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!replacements.compareAndSet(count, count - 1));
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evaluations.shutdownNow();
+    }
+
+    private Context acquire() {
+        final long start = System.nanoTime();
+        Context context = idle.pollFirst();
+
+        if (context == null) {
+            context = grow();
+        }
+        if (context == null) {
+            waiting.incrementAndGet();
+            try {
+                context = idle.pollFirst(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EngineUnavailableException("Interrupted while waiting for a jsonata engine", e);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        final long waited = System.nanoTime() - start;
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (context == null) {
+            timeouts.incrementAndGet();
+            throw new EngineUnavailableException(
+                    "No jsonata engine available within " + acquireTimeoutMillis + "ms", null);
+        }
+        acquisitions.incrementAndGet();
+        context.state.set(Context.BUSY);
+        return context;
+    }
+
+    private Context grow() {
+        int count;
+        do {
+            count = created.get();
+            if (count >= poolSize) {
+                return null;
+            }
+        } while (!created.compareAndSet(count, count + 1));
 
-    public JsonataEngine() {
-        final ScriptEngineManager factory = new ScriptEngineManager();
-        engine = factory.getEngineByName("JavaScript");
-        inv = (Invocable) engine;
+        try {
+            return newContext();
+        } catch (RuntimeException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
 
+    private Context newContext() {
+        final ScriptEngine engine = factory.getEngineByName("JavaScript");
         try {
             final Reader jsonata =
                     new InputStreamReader(
                             this.getClass().getResourceAsStream("/static/jsonata-1.5.4-es5.js"),
                             StandardCharsets.UTF_8.name());
             engine.eval(jsonata);
+            engine.eval(FUNCTIONS);
         } catch (UnsupportedEncodingException ue) {
             throw new RuntimeException("Jsonata file could not be loaded", ue);
         } catch (ScriptException se) {
             throw new RuntimeException("Jsonata could not be initialized", se);
         }
+        return new Context((Invocable) engine);
     }
 
-    public Object parseData(final String data) {
-        engine.put("input", data);
-        try {
-            return engine.eval("JSON.parse(input);");
-        } catch (ScriptException e) {
-            throw new RuntimeException("Error when parsing json input", e);
+    /**
+     * One isolated script engine with the jsonata library loaded. Must only be used by the thread holding it.
+     */
+    final class Context {
+        private static final int IDLE = 0;
+        private static final int BUSY = 1;
+        private static final int QUARANTINED = 2;
+        private static final int REPLACED = 3;
+        private static final int RETIRED = 4;
+
+        private final transient AtomicInteger state = new AtomicInteger(IDLE);
+        private final transient Invocable inv;
+        private final transient Map<String, Object> expressions = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+                if (size() > expressionCacheSize) {
+                    expressionEvictions.incrementAndGet();
+                    expressionsCached.decrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private Context(final Invocable inv) {
+            this.inv = inv;
         }
-    }
 
-    public String validate(final Object data, final String jsonataExpression) {
+        Object parse(final String data) {
+            try {
+                return inv.invokeFunction("__parseData", data);
+            } catch (ScriptException | NoSuchMethodException e) {
+                throw new RuntimeException("Error when parsing json input", e);
+            }
+        }
 
-        Object resultjson = null;
-        try {
-            final Object expr = inv.invokeFunction("jsonata", jsonataExpression);
-            resultjson = inv.invokeMethod(expr, "evaluate", data);
-            engine.put("resultjson", resultjson);
-            return engine.eval("JSON.stringify(resultjson);").toString();
-        } catch (ScriptException | NoSuchMethodException e) {
-            LOG.error("the {} doesn't match with {} pattern", resultjson, jsonataExpression);
-            throw new RuntimeException("Jsonata could not be called", e);
+        String evaluate(final Object data, final String jsonataExpression, final String now, final Integer rownum) {
+            try {
+                final Object resultjson = inv.invokeFunction("__evaluate", compile(jsonataExpression), data, now, rownum);
+                return resultjson == null ? null : resultjson.toString();
+            } catch (ScriptException | NoSuchMethodException e) {
+                LOG.error("the data doesn't match with {} pattern", jsonataExpression);
+                throw new RuntimeException("Jsonata could not be called", e);
+            }
+        }
+
+        String[] evaluateRows(final Object data, final String jsonataExpression, final String now, final int[] rownums) {
+            try {
+                return (String[]) inv.invokeFunction(
+                        "__evaluateRows", compile(jsonataExpression), data, now, rownums);
+            } catch (ScriptException | NoSuchMethodException e) {
+                LOG.error("the data doesn't match with {} pattern", jsonataExpression);
+                throw new RuntimeException("Jsonata could not be called", e);
+            }
+        }
+
+        private Object compile(final String jsonataExpression) throws ScriptException, NoSuchMethodException {
+            Object expression = expressions.get(jsonataExpression);
+            if (expression != null) {
+                expressionHits.incrementAndGet();
+                return expression;
+            }
+
+            expressionMisses.incrementAndGet();
+            expression = inv.invokeFunction("__compile", jsonataExpression);
+            expressionsCached.incrementAndGet();
+            expressions.put(jsonataExpression, expression);
+            return expression;
         }
     }
 }
@@ -0,0 +1,119 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.LoadStatistics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks how busy the instance is, so readiness can report real capacity: the validations in flight, the 99th
+ * percentile of the latencies of the recent validations, and the threads queued for a jsonata engine. An instance
+ * over any of its limits reports itself not ready, and the load balancer sends new requests to other instances until
+ * it has caught up. The latency only counts once the window holds {@code validator.load.min-latency-samples}
+ * validations, so a few slow validations of an idle instance don't take it out of rotation for a whole window.
+ */
+@Service
+public class LoadMonitor {
+
+    private final transient JsonataEngine jsonataEngine;
+    private final transient WarmUp warmUp;
+    private final transient int maxInFlight;
+    private final transient long maxP99Millis;
+    private final transient int maxEngineWaiting;
+    private final transient long latencyWindowNanos;
+    private final transient int minLatencySamples;
+
+    private final transient AtomicInteger inFlight = new AtomicInteger();
+    private final transient long[] latencies;
+    private final transient long[] finished;
+    private transient int next;
+    private transient int recorded;
+
+    public LoadMonitor(
+            final JsonataEngine jsonataEngine,
+            final WarmUp warmUp,
+            @Value("${validator.load.max-in-flight:0}") final int maxInFlight,
+            @Value("${validator.load.max-p99-ms:5000}") final long maxP99Millis,
+            @Value("${validator.load.max-engine-waiting:0}") final int maxEngineWaiting,
+            @Value("${validator.load.latency-samples:1024}") final int latencySamples,
+            @Value("${validator.load.latency-window-ms:60000}") final long latencyWindowMillis,
+            @Value("${validator.load.min-latency-samples:20}") final int minLatencySamples) {
+        this.jsonataEngine = jsonataEngine;
+        this.warmUp = warmUp;
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : Runtime.getRuntime().availableProcessors() * 8;
+        this.maxP99Millis = maxP99Millis;
+        this.maxEngineWaiting = maxEngineWaiting > 0 ? maxEngineWaiting : jsonataEngine.getStatistics().getSize();
+        this.latencyWindowNanos = TimeUnit.MILLISECONDS.toNanos(latencyWindowMillis);
+        this.minLatencySamples = Math.min(minLatencySamples, latencySamples);
+        this.latencies = new long[latencySamples];
+        this.finished = new long[latencySamples];
+    }
+
+    /**
+     * @return the start of the validation, to be passed to {@link #exit(long)}
+     */
+    public long enter() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a validation without recording its latency.
+     */
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Ends a validation and records its latency.
+     */
+    public void exit(final long start) {
+        final long now = System.nanoTime();
+        inFlight.decrementAndGet();
+        synchronized (latencies) {
+            latencies[next] = now - start;
+            finished[next] = now;
+            next = (next + 1) % latencies.length;
+            recorded = Math.min(recorded + 1, latencies.length);
+        }
+    }
+
+    public LoadStatistics getStatistics() {
+        final boolean warm = warmUp.isReady();
+        final int currentInFlight = inFlight.get();
+        final long[] recent = recentLatencies();
+        final long p99Millis = recent.length == 0
+                ? 0 : TimeUnit.NANOSECONDS.toMillis(recent[(int) Math.ceil(recent.length * 0.99) - 1]);
+        final int engineWaiting = jsonataEngine.getStatistics().getWaiting();
+
+        final boolean ready = warm
+                && currentInFlight <= maxInFlight
+                && (recent.length < minLatencySamples || p99Millis <= maxP99Millis)
+                && engineWaiting <= maxEngineWaiting;
+        return new LoadStatistics(
+                ready, warm, currentInFlight, maxInFlight, p99Millis, maxP99Millis, engineWaiting, maxEngineWaiting);
+    }
+
+    /**
+     * @return the latencies of the validations of the window, sorted
+     */
+    private long[] recentLatencies() {
+        final long oldest = System.nanoTime() - latencyWindowNanos;
+        final long[] recent = new long[latencies.length];
+        int count = 0;
+        synchronized (latencies) {
+            for (int index = 0; index < recorded; index++) {
+                if (finished[index] - oldest >= 0) {
+                    recent[count++] = latencies[index];
+                }
+            }
+        }
+        final long[] sorted = Arrays.copyOf(recent, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,69 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CacheStatistics;
+import at.fhtw.swe.model.GuardedPattern;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounded LRU of compiled regex rules, shared by all templates, so a pattern is compiled once no matter how many
+ * templates or template versions use it.
+ */
+@Service
+public class PatternCache {
+
+    private final transient int maxEntries;
+    private final transient long matchBudgetMillis;
+
+    private final transient AtomicLong hits = new AtomicLong();
+    private final transient AtomicLong misses = new AtomicLong();
+    private final transient AtomicLong evictions = new AtomicLong();
+
+    private final transient Map<String, GuardedPattern> patterns =
+            new LinkedHashMap<String, GuardedPattern>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, GuardedPattern> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    public PatternCache(
+            @Value("${validator.pattern-cache.max-entries:1024}") final int maxEntries,
+            @Value("${validator.pattern.match-budget-ms:100}") final long matchBudgetMillis) {
+        this.maxEntries = maxEntries;
+        this.matchBudgetMillis = matchBudgetMillis;
+    }
+
+    public GuardedPattern get(final String regex) {
+        synchronized (patterns) {
+            final GuardedPattern pattern = patterns.get(regex);
+            if (pattern != null) {
+                hits.incrementAndGet();
+                return pattern;
+            }
+        }
+
+        misses.incrementAndGet();
+        final GuardedPattern pattern = new GuardedPattern(Pattern.compile(regex), matchBudgetMillis);
+        synchronized (patterns) {
+            patterns.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    public CacheStatistics getStatistics() {
+        synchronized (patterns) {
+            return new CacheStatistics(hits.get(), misses.get(), evictions.get(), patterns.size());
+        }
+    }
+}
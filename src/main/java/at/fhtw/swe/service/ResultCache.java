@@ -0,0 +1,139 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CacheStatistics;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ValidationError;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Opt-in bounded LRU cache of validation results, keyed by the template hash, the hash of the data text and the mode,
+ * for clients submitting the same document again. Entries expire after {@code validator.result-cache.ttl-ms}.
+ * Templates with rules reading {@code @date:now@} are never cached, nor are results with timeout violations, which
+ * depend on the load rather than on the data.
+ */
+@Service
+public class ResultCache {
+
+    private final transient boolean enabled;
+    private final transient int maxEntries;
+    private final transient long ttlMillis;
+
+    private final transient LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final transient AtomicLong hits = new AtomicLong();
+    private final transient AtomicLong misses = new AtomicLong();
+    private final transient AtomicLong evictions = new AtomicLong();
+
+    public ResultCache(
+            @Value("${validator.result-cache.enabled:false}") final boolean enabled,
+            @Value("${validator.result-cache.max-entries:4096}") final int maxEntries,
+            @Value("${validator.result-cache.ttl-ms:10000}") final long ttlMillis) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the cached errors of the data, or those of the validation, which are then cached
+     */
+    public Set<ValidationError> get(
+            final CompiledForm form,
+            final String formdata,
+            final boolean internal,
+            final Supplier<Set<ValidationError>> validation) {
+        return get(form, () -> formdata, internal, validation);
+    }
+
+    /**
+     * Same as {@link #get(CompiledForm, String, boolean, Supplier)} for data given as a tree, which is only written
+     * out to be hashed if the cache is enabled.
+     */
+    public Set<ValidationError> get(
+            final CompiledForm form,
+            final JsonNode formdata,
+            final boolean internal,
+            final Supplier<Set<ValidationError>> validation) {
+        return get(form, formdata::toString, internal, validation);
+    }
+
+    private Set<ValidationError> get(
+            final CompiledForm form,
+            final Supplier<String> formdata,
+            final boolean internal,
+            final Supplier<Set<ValidationError>> validation) {
+        if (!enabled || form.isTimeDependent(internal)) {
+            return validation.get();
+        }
+
+        final String key = form.getHash() + (internal ? ":internal:" : ":external:") + ContentHash.of(formdata.get());
+        final long now = System.currentTimeMillis();
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.expires > now) {
+                hits.incrementAndGet();
+                return new LinkedHashSet<>(entry.errors);
+            }
+        }
+
+        misses.incrementAndGet();
+        final Set<ValidationError> errors = validation.get();
+        if (isCacheable(errors)) {
+            put(key, new Entry(new LinkedHashSet<>(errors), now + ttlMillis));
+        }
+        return errors;
+    }
+
+    public CacheStatistics getStatistics() {
+        synchronized (entries) {
+            return new CacheStatistics(hits.get(), misses.get(), evictions.get(), entries.size());
+        }
+    }
+
+    private static boolean isCacheable(final Set<ValidationError> errors) {
+        for (ValidationError error : errors) {
+            if (Validator.TIMEOUT_KEY.equals(error.getViolation())
+                    || SingleValueValidator.PATTERN_TIMEOUT_KEY.equals(error.getViolation())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(final String key, final Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+
+            final long now = System.currentTimeMillis();
+            final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (eldest.hasNext()) {
+                final Entry candidate = eldest.next().getValue();
+                if (entries.size() <= maxEntries && candidate.expires > now) {
+                    break;
+                }
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Set<ValidationError> errors;
+        private final long expires;
+
+        private Entry(final Set<ValidationError> errors, final long expires) {
+            this.errors = errors;
+            this.expires = expires;
+        }
+    }
+}
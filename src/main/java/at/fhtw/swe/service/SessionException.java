@@ -0,0 +1,22 @@
+package at.fhtw.swe.service;
+
+/**
+ * Thrown when a validation session cannot be opened with the data, or an edit cannot be applied to it.
+ */
+public class SessionException extends RuntimeException {
+
+    public enum Reason {
+        NOT_FOUND, TEMPLATE_CHANGED, INVALID_CHANGE, INVALID_DATA
+    }
+
+    private final transient Reason reason;
+
+    public SessionException(final Reason reason, final String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
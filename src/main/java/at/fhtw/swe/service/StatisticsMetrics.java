@@ -0,0 +1,136 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CacheStatistics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the statistics the caches, the jsonata pool, the load monitor and the compute pool keep anyway. They are
+ * read when the metrics are scraped, so they cost nothing on the validation path.
+ */
+@Component
+public class StatisticsMetrics {
+
+    private final transient TemplateCache templateCache;
+    private final transient TemplateRegistry templateRegistry;
+    private final transient PatternCache patternCache;
+    private final transient ResultCache resultCache;
+    private final transient JsonataEngine jsonataEngine;
+    private final transient LoadMonitor loadMonitor;
+    private final transient AdmissionControl admissionControl;
+    private final transient ComputePool computePool;
+
+    public StatisticsMetrics(
+            final MeterRegistry registry,
+            final TemplateCache templateCache,
+            final TemplateRegistry templateRegistry,
+            final PatternCache patternCache,
+            final ResultCache resultCache,
+            final JsonataEngine jsonataEngine,
+            final LoadMonitor loadMonitor,
+            final AdmissionControl admissionControl,
+            final ComputePool computePool) {
+        this.templateCache = templateCache;
+        this.templateRegistry = templateRegistry;
+        this.patternCache = patternCache;
+        this.resultCache = resultCache;
+        this.jsonataEngine = jsonataEngine;
+        this.loadMonitor = loadMonitor;
+        this.admissionControl = admissionControl;
+        this.computePool = computePool;
+        bind(registry);
+    }
+
+    /**
+     * Not a {@code MeterBinder}: binders are applied while the registry is created, and the load monitor depends on
+     * the validator, which needs the registry for its own metrics.
+     */
+    private void bind(final MeterRegistry registry) {
+        // the meters only hold weak references, so they are bound to the beans instead of to method references
+        bindCache(registry, "template", templateCache, TemplateCache::getStatistics);
+        bindCache(registry, "pattern", patternCache, PatternCache::getStatistics);
+        bindCache(registry, "result", resultCache, ResultCache::getStatistics);
+        bindCache(registry, "jsonataExpression", jsonataEngine, JsonataEngine::getExpressionStatistics);
+        Gauge.builder("validator.registry.templates", templateRegistry, TemplateRegistry::size)
+                .description("Versions of the registered templates")
+                .register(registry);
+
+        Gauge.builder("validator.jsonata.pool.created", jsonataEngine, engine -> engine.getStatistics().getCreated())
+                .description("Jsonata script engines created")
+                .register(registry);
+        Gauge.builder("validator.jsonata.pool.idle", jsonataEngine, engine -> engine.getStatistics().getIdle())
+                .description("Jsonata script engines not in use")
+                .register(registry);
+        Gauge.builder("validator.jsonata.pool.waiting", jsonataEngine, engine -> engine.getStatistics().getWaiting())
+                .description("Threads waiting for a jsonata script engine")
+                .register(registry);
+        FunctionCounter.builder("validator.jsonata.pool.timeouts", jsonataEngine,
+                engine -> engine.getStatistics().getTimeouts())
+                .description("Acquisitions of a jsonata script engine that timed out")
+                .register(registry);
+
+        Gauge.builder("validator.load.in-flight", loadMonitor, monitor -> monitor.getStatistics().getInFlight())
+                .description("Validations in flight")
+                .register(registry);
+        Gauge.builder("validator.load.ready", loadMonitor, monitor -> monitor.getStatistics().isReady() ? 1 : 0)
+                .description("Whether the instance reports itself ready")
+                .register(registry);
+
+        Gauge.builder("validator.admission.queued", admissionControl, control -> control.getStatistics().getQueued())
+                .description("Validations waiting for admission")
+                .register(registry);
+        FunctionCounter.builder("validator.admission.rejected", admissionControl,
+                control -> control.getStatistics().getQueueFull())
+                .description("Validations rejected")
+                .tag("reason", "queueFull")
+                .register(registry);
+        FunctionCounter.builder("validator.admission.rejected", admissionControl,
+                control -> control.getStatistics().getQueueTimeouts())
+                .description("Validations rejected")
+                .tag("reason", "queueTimeout")
+                .register(registry);
+        FunctionCounter.builder("validator.admission.rejected", admissionControl,
+                control -> control.getStatistics().getTooLarge())
+                .description("Validations rejected")
+                .tag("reason", "tooLarge")
+                .register(registry);
+
+        Gauge.builder("validator.async.active", computePool, ComputePool::getActive)
+                .description("Asynchronous validations running on the compute pool")
+                .register(registry);
+        Gauge.builder("validator.async.queued", computePool, ComputePool::getQueued)
+                .description("Asynchronous validations waiting for a compute thread")
+                .register(registry);
+    }
+
+    private static <T> void bindCache(
+            final MeterRegistry registry,
+            final String cache,
+            final T source,
+            final Function<T, CacheStatistics> statistics) {
+        counter(registry, "validator.cache.hits", cache, source, statistics, CacheStatistics::getHits);
+        counter(registry, "validator.cache.misses", cache, source, statistics, CacheStatistics::getMisses);
+        counter(registry, "validator.cache.evictions", cache, source, statistics, CacheStatistics::getEvictions);
+        Gauge.builder("validator.cache.size", source, current -> statistics.apply(current).getSize())
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    private static <T> void counter(
+            final MeterRegistry registry,
+            final String name,
+            final String cache,
+            final T source,
+            final Function<T, CacheStatistics> statistics,
+            final ToDoubleFunction<CacheStatistics> value) {
+        FunctionCounter.builder(name, source, current -> value.applyAsDouble(statistics.apply(current)))
+                .tag("cache", cache)
+                .register(registry);
+    }
+}
@@ -0,0 +1,252 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledComponent;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.DataPath;
+import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.model.ValidationRules;
+import at.fhtw.swe.model.ValidationValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Validates form data while it is read from a token stream, without building a tree of the whole document. The
+ * native rules are checked as soon as a value is read. Only the top level fields that jsonata rules may read are
+ * materialized, so the memory the validation adds is bounded by the template and the jsonata inputs, not by the size
+ * of the data. Data that already is in memory as text, as when it was embedded in a string of the request, stays
+ * there; the validation only saves the tree, which takes several times the text.
+ * Results are the same as {@link Validator#validateForm(CompiledForm, String, boolean)}.
+ */
+@Service
+public class StreamingValidator {
+
+    private final transient Validator validator;
+    private final transient ValidationMetrics metrics;
+    private final transient SingleValueValidator singleValueValidator;
+    private final transient JsonFactory jsonFactory = new MappingJsonFactory();
+
+    public StreamingValidator(
+            final Validator validator, final ValidationMetrics metrics) {
+        this.validator = validator;
+        this.metrics = metrics;
+        this.singleValueValidator = new SingleValueValidator(metrics);
+    }
+
+    public Set<ValidationError> validateForm(
+            final CompiledForm form, final Reader formdata, final boolean internal) {
+        try (JsonParser parser = jsonFactory.createParser(formdata)) {
+            parser.nextToken();
+            return validateForm(form, parser, internal);
+        } catch (IOException e) {
+            throw new RuntimeException("Error when parsing form data", e);
+        }
+    }
+
+    /**
+     * Validates the data a parser is positioned on, in any format Jackson reads, as part of a larger document. The
+     * parser needs a codec and is left on the last token of the data.
+     */
+    public Set<ValidationError> validateForm(
+            final CompiledForm form, final JsonParser parser, final boolean internal) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT || form.isJsonataReadingWholeDocument()) {
+            final JsonNode data = parser.readValueAsTree();
+            return validator.validateForm(form, data, internal);
+        }
+
+        final long start = metrics.start();
+        final long startNanos = System.nanoTime();
+        final StreamState state = new StreamState(form, internal);
+        readObject(parser, null, DataPath.ROOT, state);
+        final Set<ValidationError> errors = state.finish(startNanos);
+        metrics.recordValidation(form.getHash(), internal, start);
+        validator.countViolations(errors);
+        return errors;
+    }
+
+    private int readObject(
+            final JsonParser parser, final Integer row, final DataPath path, final StreamState state)
+            throws IOException {
+        final boolean root = path == DataPath.ROOT;
+        int fields = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            final List<ComponentState> components = state.components.get(field);
+            fields++;
+
+            if (root && state.form.getJsonataFields().contains(field)) {
+                final JsonNode value = parser.readValueAsTree();
+                state.jsonataDocument.set(field, value);
+                state.index(field, value);
+            } else if (token.isScalarValue()) {
+                if (components != null) {
+                    final JsonNode value = token == JsonToken.VALUE_NULL ? NullNode.getInstance() : parser.readValueAsTree();
+                    state.occurrence(components, value, null, row, path.field(field));
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                final DataPath fieldPath = path.field(field);
+                final int size = readArray(parser, fieldPath, state);
+                if (components != null) {
+                    state.occurrence(components, JsonNodeFactory.instance.arrayNode(), size, row, fieldPath);
+                }
+            } else {
+                final DataPath fieldPath = path.field(field);
+                final int size = readObject(parser, row, fieldPath, state);
+                if (components != null) {
+                    state.occurrence(components, JsonNodeFactory.instance.objectNode(), size, row, fieldPath);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private int readArray(final JsonParser parser, final DataPath path, final StreamState state) throws IOException {
+        int index = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                readObject(parser, index, path.element(index), state);
+            } else if (token == JsonToken.START_ARRAY) {
+                readArray(parser, path.element(index), state);
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private void validateNative(
+            final ComponentState component, final JsonNode value, final Integer size, final Integer row,
+            final DataPath path, final Set<ValidationError> errors) {
+        final ValidationValue validationValue = component.validationValue(row, path);
+        validationValue.setValue(value);
+        validationValue.setSize(size);
+        singleValueValidator.validateSingleValue(validationValue, errors);
+    }
+
+    private final class StreamState {
+        private final CompiledForm form;
+        private final Map<String, List<ComponentState>> components = new HashMap<>();
+        private final ObjectNode jsonataDocument = JsonNodeFactory.instance.objectNode();
+        private final Set<ValidationError> errors = new HashSet<>();
+
+        private StreamState(final CompiledForm form, final boolean internal) {
+            this.form = form;
+            for (CompiledComponent component : form.getComponents()) {
+                components.computeIfAbsent(component.getKey(), key -> new ArrayList<>(1))
+                        .add(new ComponentState(component, component.getRules(internal)));
+            }
+        }
+
+        /**
+         * Feeds a materialized subtree, the key of which has already been read.
+         */
+        private void index(final String field, final JsonNode value) {
+            final DataPath path = DataPath.ROOT.field(field);
+            if (components.containsKey(field)) {
+                occurrence(components.get(field), value, null, null, path);
+            }
+            final DataIndex dataIndex = DataIndex.of(value, form.getKeys(), path);
+            for (String key : form.getKeys()) {
+                for (DataIndex.IndexedValue indexed : dataIndex.get(key)) {
+                    occurrence(components.get(key), indexed.getValue(), null, indexed.getRow(), indexed.getPath());
+                }
+            }
+        }
+
+        private void occurrence(
+                final List<ComponentState> keyComponents,
+                final JsonNode value,
+                final Integer size,
+                final Integer row,
+                final DataPath path) {
+            for (ComponentState component : keyComponents) {
+                if (component.component.isInsideGrid()) {
+                    final int gridRow = row != null ? row : component.occurrences;
+                    component.occurrences++;
+                    validateNative(component, value, size, gridRow, path, errors);
+                    component.addJsonataRow(gridRow, path);
+                } else if (component.occurrences++ == 0) {
+                    component.firstPath = path;
+                    validateNative(component, value, size, null, path, errors);
+                }
+            }
+        }
+
+        private Set<ValidationError> finish(final long startNanos) {
+            final JsonataData jsonataData = validator.parseData(jsonataDocument, null, startNanos);
+            for (List<ComponentState> keyComponents : components.values()) {
+                for (ComponentState component : keyComponents) {
+                    if (component.component.isInsideGrid()) {
+                        for (int index = 0; index < component.jsonataRowCount; index++) {
+                            validator.checkJsonnata(jsonataData, component.validationValue(
+                                    component.jsonataRows[index], component.jsonataPaths[index]))
+                                    .ifPresent(errors::add);
+                        }
+                    } else {
+                        if (component.occurrences == 0) {
+                            validateNative(component, null, null, null, null, errors);
+                        }
+                        validator.checkJsonnata(jsonataData, component.validationValue(null, component.firstPath))
+                                .ifPresent(errors::add);
+                    }
+                }
+            }
+            return errors;
+        }
+    }
+
+    private static final class ComponentState {
+        private final CompiledComponent component;
+        private final ValidationRules rules;
+        private int occurrences;
+        private DataPath firstPath;
+        private int[] jsonataRows = new int[0];
+        private DataPath[] jsonataPaths = new DataPath[0];
+        private int jsonataRowCount;
+
+        private ComponentState(final CompiledComponent component, final ValidationRules rules) {
+            this.component = component;
+            this.rules = rules;
+        }
+
+        private ValidationValue validationValue(final Integer row, final DataPath path) {
+            final ValidationValue validationValue = new ValidationValue();
+            validationValue.setKey(component.getKey());
+            validationValue.setType(component.getType());
+            validationValue.setRules(rules);
+            validationValue.setRow(row);
+            validationValue.setPath(path);
+            return validationValue;
+        }
+
+        private void addJsonataRow(final int row, final DataPath path) {
+            if (rules.getJsonata() == null) {
+                return;
+            }
+            if (jsonataRowCount == jsonataRows.length) {
+                jsonataRows = Arrays.copyOf(jsonataRows, Math.max(8, jsonataRowCount * 2));
+                jsonataPaths = Arrays.copyOf(jsonataPaths, jsonataRows.length);
+            }
+            jsonataPaths[jsonataRowCount] = path;
+            jsonataRows[jsonataRowCount++] = row;
+        }
+    }
+}
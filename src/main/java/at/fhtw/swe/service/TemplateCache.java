@@ -0,0 +1,103 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CacheStatistics;
+import at.fhtw.swe.model.CompiledForm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounded LRU cache of compiled templates, keyed by the hash of the template text. The weight of an entry is the
+ * length of its template, so a few huge templates cannot crowd the heap.
+ */
+@Service
+public class TemplateCache {
+
+    private final transient FormCompiler formCompiler;
+    private final transient int maxEntries;
+    private final transient long maxWeight;
+
+    private final transient LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private transient long weight;
+
+    private final transient AtomicLong hits = new AtomicLong();
+    private final transient AtomicLong misses = new AtomicLong();
+    private final transient AtomicLong evictions = new AtomicLong();
+
+    public TemplateCache(
+            @Value("${validator.template-cache.max-entries:256}") final int maxEntries,
+            @Value("${validator.template-cache.max-weight:16777216}") final long maxWeight,
+            final PatternCache patternCache) {
+        this.formCompiler = new FormCompiler(patternCache);
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    public CompiledForm get(final String form) {
+        final String hash = ContentHash.of(form);
+        synchronized (entries) {
+            final Entry entry = entries.get(hash);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.form;
+            }
+        }
+
+        misses.incrementAndGet();
+        final CompiledForm compiledForm = formCompiler.compile(form, hash);
+        put(hash, new Entry(compiledForm, form.length()));
+        return compiledForm;
+    }
+
+    /**
+     * @return the compiled template with the given hash, as answered by {@link CompiledForm#getHash()}
+     * @throws TemplateException if the template was never compiled or has been evicted since
+     */
+    public CompiledForm getByHash(final String hash) {
+        synchronized (entries) {
+            final Entry entry = entries.get(hash);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.form;
+            }
+        }
+        misses.incrementAndGet();
+        throw new TemplateException(TemplateException.Reason.NOT_FOUND,
+                "No template " + hash + ", it has to be uploaded again");
+    }
+
+    public CacheStatistics getStatistics() {
+        synchronized (entries) {
+            return new CacheStatistics(hits.get(), misses.get(), evictions.get(), entries.size());
+        }
+    }
+
+    private void put(final String hash, final Entry entry) {
+        synchronized (entries) {
+            final Entry previous = entries.put(hash, entry);
+            weight += entry.weight - (previous == null ? 0 : previous.weight);
+
+            final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+                weight -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final CompiledForm form;
+        private final long weight;
+
+        private Entry(final CompiledForm form, final long weight) {
+            this.form = form;
+            this.weight = weight;
+        }
+    }
+}
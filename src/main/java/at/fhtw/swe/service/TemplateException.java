@@ -0,0 +1,27 @@
+package at.fhtw.swe.service;
+
+/**
+ * Thrown when a request references a template that is not available, or when a template cannot be registered.
+ */
+public class TemplateException extends RuntimeException {
+
+    public enum Reason {
+        NOT_FOUND, INVALID
+    }
+
+    private final transient Reason reason;
+
+    public TemplateException(final Reason reason, final String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public TemplateException(final Reason reason, final String message, final Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,406 @@
+package at.fhtw.swe.service;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import at.fhtw.swe.model.CompiledComponent;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.RegisteredTemplate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Templates registered ahead of the validations, by id and version. Every version is a file
+ * {@code <id>/<version>.json} below {@code validator.registry.directory}, so the registry survives restarts and can
+ * be filled by dropping files there. Registration compiles the template and checks its patterns, dates and jsonata
+ * expressions, so a broken template is rejected then instead of failing the validations.
+ *
+ * All versions are compiled at the start and again whenever their files change, so validations referencing a
+ * registered template never read or parse its text. A file changed into an invalid template keeps its last valid
+ * version.
+ */
+@Service
+public class TemplateRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateRegistry.class);
+
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_.-]{0,127}");
+    private static final Pattern VERSION_FILE = Pattern.compile("([1-9][0-9]{0,8})\\.json");
+
+    private final transient Path directory;
+    private final transient boolean watch;
+    private final transient FormCompiler formCompiler;
+    private final transient JsonataEngine jsonataEngine;
+    private final transient ObjectMapper objectMapper = new ObjectMapper();
+
+    /** the versions of every id; a map of versions is replaced on every change, never changed, so reads need no lock */
+    private final transient Map<String, NavigableMap<Integer, Registration>> templates = new ConcurrentHashMap<>();
+    private transient WatchService watchService;
+
+    public TemplateRegistry(
+            final PatternCache patternCache,
+            final JsonataEngine jsonataEngine,
+            @Value("${validator.registry.directory:template-registry}") final String directory,
+            @Value("${validator.registry.watch:true}") final boolean watch) {
+        this.formCompiler = new FormCompiler(patternCache);
+        this.jsonataEngine = jsonataEngine;
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.watch = watch;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (Files.isDirectory(directory)) {
+            reloadAll();
+            startWatching();
+        }
+    }
+
+    /**
+     * Stores the template as the version after the highest one of the id.
+     *
+     * @throws TemplateException if the id or the template is invalid
+     */
+    public synchronized RegisteredTemplate register(final String id, final String template) {
+        checkId(id);
+        final String hash = ContentHash.of(template);
+        final CompiledForm form = compile(template, hash);
+
+        final Path templateDirectory = directory.resolve(id);
+        final int version;
+        try {
+            Files.createDirectories(templateDirectory);
+            version = highestVersion(templateDirectory, templates.get(id)) + 1;
+            final Path temporary = Files.createTempFile(templateDirectory, ".", ".tmp");
+            Files.write(temporary, template.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, templateDirectory.resolve(version + ".json"), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The template " + id + " could not be stored", e);
+        }
+
+        final RegisteredTemplate registered = new RegisteredTemplate(id, version, hash);
+        final NavigableMap<Integer, Registration> versions = new TreeMap<>(templates.getOrDefault(id, EMPTY));
+        versions.put(version, new Registration(registered, form));
+        templates.put(id, Collections.unmodifiableNavigableMap(versions));
+        startWatching();
+        return registered;
+    }
+
+    /**
+     * @param version the version, {@code null} for the latest
+     * @throws TemplateException if there is no such template
+     */
+    public CompiledForm get(final String id, final Integer version) {
+        final NavigableMap<Integer, Registration> versions = templates.get(id);
+        final Registration registration = versions == null
+                ? null
+                : version == null ? versions.lastEntry().getValue() : versions.get(version);
+        if (registration == null) {
+            throw notFound(id, version);
+        }
+        return registration.form;
+    }
+
+    public List<RegisteredTemplate> list() {
+        final List<RegisteredTemplate> registered = new ArrayList<>();
+        for (String id : new TreeSet<>(templates.keySet())) {
+            templates.getOrDefault(id, EMPTY).values().forEach(registration -> registered.add(registration.template));
+        }
+        return registered;
+    }
+
+    /**
+     * @throws TemplateException if there is no template with the id
+     */
+    public List<RegisteredTemplate> list(final String id) {
+        final NavigableMap<Integer, Registration> versions = templates.get(id);
+        if (versions == null) {
+            throw notFound(id, null);
+        }
+        final List<RegisteredTemplate> registered = new ArrayList<>(versions.size());
+        versions.values().forEach(registration -> registered.add(registration.template));
+        return registered;
+    }
+
+    /**
+     * @param version the version, {@code null} for all versions
+     * @throws TemplateException if there is no such template
+     */
+    public synchronized void delete(final String id, final Integer version) {
+        final NavigableMap<Integer, Registration> versions = templates.get(id);
+        if (versions == null || version != null && !versions.containsKey(version)) {
+            throw notFound(id, version);
+        }
+
+        final NavigableMap<Integer, Registration> remaining = new TreeMap<>(versions);
+        final Path templateDirectory = directory.resolve(id);
+        try {
+            for (Integer deleted : version == null ? versions.keySet() : Collections.singleton(version)) {
+                Files.deleteIfExists(templateDirectory.resolve(deleted + ".json"));
+                remaining.remove(deleted);
+            }
+            if (remaining.isEmpty()) {
+                Files.deleteIfExists(templateDirectory);
+            }
+        } catch (DirectoryNotEmptyException e) {
+            LOG.debug("{} keeps files other than templates", templateDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The template " + id + " could not be deleted", e);
+        }
+
+        if (remaining.isEmpty()) {
+            templates.remove(id);
+        } else {
+            templates.put(id, Collections.unmodifiableNavigableMap(remaining));
+        }
+    }
+
+    /**
+     * @return the number of registered versions of all templates
+     */
+    public int size() {
+        int size = 0;
+        for (NavigableMap<Integer, Registration> versions : templates.values()) {
+            size += versions.size();
+        }
+        return size;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.debug("The watch of {} could not be closed", directory, e);
+            }
+        }
+    }
+
+    synchronized void reloadAll() {
+        final Set<String> ids = new HashSet<>(templates.keySet());
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path entry : entries) {
+                    ids.add(entry.getFileName().toString());
+                }
+            } catch (IOException e) {
+                LOG.warn("The templates in {} could not be listed", directory, e);
+                return;
+            }
+        }
+        ids.forEach(this::reload);
+    }
+
+    /**
+     * Compiles the versions of an id whose files are new or changed, and drops those whose files are gone.
+     */
+    synchronized void reload(final String id) {
+        if (!ID.matcher(id).matches()) {
+            return;
+        }
+        final NavigableMap<Integer, Registration> previous = templates.getOrDefault(id, EMPTY);
+        final NavigableMap<Integer, Registration> versions = new TreeMap<>();
+        final Path templateDirectory = directory.resolve(id);
+        if (Files.isDirectory(templateDirectory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(templateDirectory)) {
+                for (Path file : files) {
+                    final Matcher matcher = VERSION_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        final int version = Integer.parseInt(matcher.group(1));
+                        final Registration registration = load(id, version, file, previous.get(version));
+                        if (registration != null) {
+                            versions.put(version, registration);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("The templates in {} could not be read", templateDirectory, e);
+                return;
+            }
+        }
+
+        if (versions.isEmpty()) {
+            templates.remove(id);
+        } else {
+            templates.put(id, Collections.unmodifiableNavigableMap(versions));
+        }
+    }
+
+    private Registration load(final String id, final int version, final Path file, final Registration previous)
+            throws IOException {
+        final String template = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        final String hash = ContentHash.of(template);
+        if (previous != null && previous.template.getTemplateHash().equals(hash)) {
+            return previous;
+        }
+        try {
+            final Registration registration =
+                    new Registration(new RegisteredTemplate(id, version, hash), compile(template, hash));
+            LOG.info("Loaded the template {} in version {}", id, version);
+            return registration;
+        } catch (TemplateException e) {
+            LOG.warn("{} is not a valid template, {}: {}", file,
+                    previous == null ? "it is ignored" : "the previous one is kept", e.getMessage());
+            return previous;
+        }
+    }
+
+    private CompiledForm compile(final String template, final String hash) {
+        try {
+            final JsonNode tree = objectMapper.readTree(template);
+            if (tree == null || !tree.isObject()) {
+                throw new TemplateException(TemplateException.Reason.INVALID, "A template must be a JSON object");
+            }
+            final CompiledForm form = formCompiler.compile(template, hash);
+            for (CompiledComponent component : form.getComponents()) {
+                for (boolean internal : new boolean[]{true, false}) {
+                    final String jsonata = component.getRules(internal).getJsonata();
+                    if (jsonata != null) {
+                        jsonataEngine.checkSyntax(jsonata);
+                    }
+                }
+            }
+            return form;
+        } catch (TemplateException | EngineUnavailableException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw new TemplateException(TemplateException.Reason.INVALID, "Invalid template: " + e.getMessage(), e);
+        }
+    }
+
+    private static int highestVersion(final Path templateDirectory, final NavigableMap<Integer, Registration> loaded)
+            throws IOException {
+        int highest = loaded == null ? 0 : loaded.lastKey();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(templateDirectory)) {
+            for (Path file : files) {
+                final Matcher matcher = VERSION_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    highest = Math.max(highest, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return highest;
+    }
+
+    private static void checkId(final String id) {
+        if (id == null || !ID.matcher(id).matches()) {
+            throw new TemplateException(TemplateException.Reason.INVALID,
+                    "Template ids are letters, digits, '.', '_' and '-', starting with a letter or digit");
+        }
+    }
+
+    private static TemplateException notFound(final String id, final Integer version) {
+        return new TemplateException(TemplateException.Reason.NOT_FOUND,
+                "No template " + id + (version == null ? "" : " in version " + version));
+    }
+
+    private synchronized void startWatching() {
+        if (!watch || watchService != null) {
+            return;
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path entry : entries) {
+                    entry.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Changes of the templates in {} are not watched", directory, e);
+            return;
+        }
+
+        final WatchService service = watchService;
+        final Thread watcher = new Thread(() -> watch(service), "template-registry-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(final WatchService service) {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            final Path watched = (Path) key.watchable();
+            final Set<String> changed = new HashSet<>();
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflow = true;
+                } else if (watched.equals(directory)) {
+                    final Path entry = directory.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(entry)) {
+                        try {
+                            entry.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                        } catch (IOException | ClosedWatchServiceException e) {
+                            LOG.warn("Changes of the templates in {} are not watched", entry, e);
+                        }
+                    }
+                    changed.add(entry.getFileName().toString());
+                } else {
+                    changed.add(watched.getFileName().toString());
+                }
+            }
+            key.reset();
+
+            if (overflow) {
+                reloadAll();
+            } else {
+                changed.forEach(this::reload);
+            }
+        }
+    }
+
+    private static final NavigableMap<Integer, Registration> EMPTY = Collections.emptyNavigableMap();
+
+    private static final class Registration {
+        private final RegisteredTemplate template;
+        private final CompiledForm form;
+
+        private Registration(final RegisteredTemplate template, final CompiledForm form) {
+            this.template = template;
+            this.form = form;
+        }
+    }
+}
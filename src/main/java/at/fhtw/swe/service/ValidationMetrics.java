@@ -0,0 +1,104 @@
+package at.fhtw.swe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Timers and counters of the validation hot path: the parsing of the data, the evaluation of each kind of rule, the
+ * whole validation per template and the violations found. Disabled, every method returns right away without even
+ * reading the clock, so the instrumentation costs a branch per rule.
+ */
+@Service
+public class ValidationMetrics {
+
+    public static final String REQUIRED = "required";
+    public static final String ROW_COUNT = "rowCount";
+    public static final String DATE = "date";
+    public static final String LENGTH = "length";
+    public static final String PATTERN = "pattern";
+    public static final String NUMBER = "number";
+    public static final String JSONATA = "jsonata";
+
+    private static final ValidationMetrics DISABLED = new ValidationMetrics(null, false);
+
+    private final transient MeterRegistry registry;
+    private final transient boolean enabled;
+    private final transient Timer parseTimer;
+    private final transient Map<String, Timer> ruleTimers = new ConcurrentHashMap<>();
+    private final transient Map<String, Timer> validationTimers = new ConcurrentHashMap<>();
+    private final transient Map<String, Counter> violationCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ValidationMetrics(
+            final MeterRegistry registry,
+            @Value("${validator.metrics.enabled:false}") final boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.parseTimer = enabled
+                ? Timer.builder("validator.parse")
+                        .description("Parsing of the form data")
+                        .publishPercentileHistogram()
+                        .register(registry)
+                : null;
+    }
+
+    public static ValidationMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return the start of a measurement, to be passed to one of the record methods
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void recordParse(final long start) {
+        if (enabled) {
+            parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordRule(final String rule, final long start) {
+        if (enabled) {
+            ruleTimers.computeIfAbsent(rule, key -> Timer.builder("validator.rule")
+                    .description("Evaluation of one kind of rule for a value, or for a column of grid values")
+                    .tag("rule", key)
+                    .publishPercentileHistogram()
+                    .register(registry))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordValidation(final String templateHash, final boolean internal, final long start) {
+        if (enabled) {
+            final String mode = internal ? "internal" : "external";
+            validationTimers.computeIfAbsent(templateHash + ':' + mode, key -> Timer.builder("validator.validation")
+                    .description("Validation of a form")
+                    .tag("template", templateHash)
+                    .tag("mode", mode)
+                    .publishPercentileHistogram()
+                    .register(registry))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void countViolation(final String violation) {
+        if (enabled) {
+            violationCounters.computeIfAbsent(violation, key -> Counter.builder("validator.violations")
+                    .description("Violations found, by the violated rule")
+                    .tag("violation", key)
+                    .register(registry))
+                    .increment();
+        }
+    }
+}
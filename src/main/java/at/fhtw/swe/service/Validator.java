@@ -1,174 +1,382 @@
 package at.fhtw.swe.service;
 
-import static com.jayway.jsonpath.Criteria.where;
-import static com.jayway.jsonpath.Filter.filter;
-
+import at.fhtw.swe.model.CompiledComponent;
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.DataPath;
 import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.model.ValidationRules;
 import at.fhtw.swe.model.ValidationValue;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.JsonPath;
-
-import java.time.Instant;
-import java.util.EnumSet;
-import java.util.HashSet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
 
-import com.jayway.jsonpath.Option;
-import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
-import com.jayway.jsonpath.spi.json.JsonProvider;
-import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
-import com.jayway.jsonpath.spi.mapper.MappingProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class Validator {
 
-    private static final String TYPE_GRID = "grid";
-    private static final String COMPONENT_KEY = "id";
-    private static final String TYPE_KEY = "type";
-    private static final String COMPONENT_TAG = "components";
-    private static final String VALIDATE_KEY = "validate";
-    private static final String ROW_NUM_PLACEHOLER = "@eval:rownum@";
-    private static final String CURRENT_DATE_PLACEHOLER = "@date:now@";
     private static final String JSONATA_KEY = "jsonata";
-    private static final String GRID_INPUT_KEYS_QUERY =
-            "$.." + COMPONENT_TAG + "[?].." + COMPONENT_TAG + "[?]." + COMPONENT_KEY;
-    private static final String INPUTS_TO_VALIDATE_QUERY = "$.." + COMPONENT_TAG + "[?]";
+    static final String TIMEOUT_KEY = "timeout";
 
     private final transient JsonataEngine jsonataEngine;
-    private final transient JsonPath getInputsToValidate = JsonPath.compile(INPUTS_TO_VALIDATE_QUERY, filter(where("@." + VALIDATE_KEY).exists(true)));
-    private final transient JsonPath getInputKeysInsideGrids = JsonPath.compile(GRID_INPUT_KEYS_QUERY, filter(where("@." + TYPE_KEY).eq(TYPE_GRID)), filter(where("@." + VALIDATE_KEY).exists(true)));
+    private final transient TemplateCache templateCache;
+
+    private final transient ValidationMetrics metrics;
+    private final transient SingleValueValidator singleValueValidator;
+    private final transient ObjectMapper objectMapper = new ObjectMapper();
+    private final transient ForkJoinPool forkJoinPool;
+    private final transient int parallelThreshold;
+    private final transient int gridChunkSize;
+    private final transient long requestBudgetNanos;
+
+    @Autowired
+    public Validator(
+            JsonataEngine jsonataEngine,
+            TemplateCache templateCache,
+            final ValidationMetrics metrics,
+            @Value("${validator.parallel.enabled:false}") final boolean parallel,
+            @Value("${validator.parallel.parallelism:0}") final int parallelism,
+            @Value("${validator.parallel.threshold:64}") final int parallelThreshold,
+            @Value("${validator.parallel.grid-chunk-size:256}") final int gridChunkSize,
+            @Value("${validator.request-budget-ms:30000}") final long requestBudgetMillis) {
+        this.jsonataEngine = jsonataEngine;
+        this.templateCache = templateCache;
+        this.metrics = metrics;
+        this.singleValueValidator = new SingleValueValidator(metrics);
+        this.forkJoinPool = parallel
+                ? new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors())
+                : null;
+        this.parallelThreshold = parallelThreshold;
+        this.gridChunkSize = gridChunkSize;
+        this.requestBudgetNanos = TimeUnit.MILLISECONDS.toNanos(requestBudgetMillis);
+    }
 
-    private final transient SingleValueValidator singleValueValidator = new SingleValueValidator();
+    private Validator(final Validator validator, final ValidationMetrics metrics) {
+        this.jsonataEngine = validator.jsonataEngine;
+        this.templateCache = validator.templateCache;
+        this.metrics = metrics;
+        this.singleValueValidator = new SingleValueValidator(metrics);
+        this.forkJoinPool = validator.forkJoinPool;
+        this.parallelThreshold = validator.parallelThreshold;
+        this.gridChunkSize = validator.gridChunkSize;
+        this.requestBudgetNanos = validator.requestBudgetNanos;
+    }
 
-    public Validator(JsonataEngine jsonataEngine) {
-        this.jsonataEngine = jsonataEngine;
+    /**
+     * @return a validator sharing the engines, caches and pools of this one, whose validations are not recorded in
+     * the metrics
+     */
+    public Validator withoutMetrics() {
+        return new Validator(this, ValidationMetrics.disabled());
+    }
 
-        Configuration.setDefaults(
-                new Configuration.Defaults() {
-                    private final JsonProvider jsonProvider = new JacksonJsonProvider();
-                    private final MappingProvider mappingProvider = new JacksonMappingProvider();
+    public Set<ValidationError> validateForm(
+            final String form, final String formdata, final boolean internal) {
+        return validateForm(templateCache.get(form), formdata, internal);
+    }
 
-                    @Override
-                    public JsonProvider jsonProvider() {
-                        return jsonProvider;
-                    }
+    public Set<ValidationError> validateForm(
+            final CompiledForm form, final String formdata, final boolean internal) {
+        final long start = metrics.start();
+        final JsonNode data;
+        try {
+            data = objectMapper.readTree(formdata);
+        } catch (IOException e) {
+            throw new RuntimeException("Error when parsing form data", e);
+        }
+        metrics.recordParse(start);
+        return validateForm(form, data, formdata, internal);
+    }
 
-                    @Override
-                    public MappingProvider mappingProvider() {
-                        return mappingProvider;
-                    }
+    public Set<ValidationError> validateForm(
+            final CompiledForm form, final JsonNode formdata, final boolean internal) {
+        return validateForm(form, formdata, null, internal);
+    }
 
-                    @Override
-                    public Set<Option> options() {
-                        return EnumSet.noneOf(Option.class);
-                    }
-                });
+    /**
+     * The data is parsed exactly once: the native rules read the Jackson tree, and jsonata only gets its own copy of
+     * the data once a jsonata rule is actually evaluated.
+     */
+    private Set<ValidationError> validateForm(
+            final CompiledForm form, final JsonNode formdata, final String formdataText, final boolean internal) {
+        final long start = metrics.start();
+        final Set<ValidationError> errors = validateIndexed(form, formdata, formdataText, internal, System.nanoTime());
+        metrics.recordValidation(form.getHash(), internal, start);
+        countViolations(errors);
+        return errors;
+    }
 
+    void countViolations(final Set<ValidationError> errors) {
+        for (ValidationError error : errors) {
+            metrics.countViolation(error.getViolation());
+        }
     }
 
-    public Set<ValidationError> validateForm(
-            final String form, final String formdata, final boolean internal) {
-        final DocumentContext formContext = JsonPath.parse(form);
-        final DocumentContext dataContext = JsonPath.parse(formdata);
-
-        final Object jsonataData = jsonataEngine.parseData(formdata);
-        final ArrayNode inputsWithValidations = getInputsWithValidations(formContext);
-        final Set<String> gridInputs = getInputKeysInsideGrids(formContext);
-        final Set<ValidationError> errors = new HashSet<>();
-        ValidationValue validationValue = new ValidationValue();
-
-        for (JsonNode input : inputsWithValidations) {
-            final String id = input.get(COMPONENT_KEY).asText();
-            final ArrayNode inspectedValue = dataContext.read("$.." + id, ArrayNode.class);
-
-            validationValue.setInstruction(input.get(VALIDATE_KEY));
-            validationValue.setKey(id);
-            validationValue.setType(input.get(TYPE_KEY).asText());
-            validationValue.setInternal(internal);
-
-            if (gridInputs.contains(id)) {
-                errors.addAll(validateFormGrid(jsonataData, validationValue, inspectedValue));
+    private Set<ValidationError> validateIndexed(
+            final CompiledForm form,
+            final JsonNode formdata,
+            final String formdataText,
+            final boolean internal,
+            final long startNanos) {
+        final DataIndex dataIndex = DataIndex.of(formdata, form.getKeys());
+        final JsonataData jsonataData = parseData(formdata, formdataText, startNanos);
+
+        if (forkJoinPool != null) {
+            final List<ValidationUnit> units = new ArrayList<>();
+            int workload = 0;
+            for (CompiledComponent component : form.getComponents()) {
+                final List<DataIndex.IndexedValue> inspectedValue = dataIndex.get(component.getKey());
+                addUnits(units, component, component.getRules(internal), inspectedValue);
+                workload += Math.max(1, inspectedValue.size());
+            }
+            if (workload >= parallelThreshold) {
+                return forkJoinPool.invoke(new ValidationFork(jsonataData, units, 0, units.size()));
+            }
+        }
+
+        final Set<ValidationError> errors = new LinkedHashSet<>();
+        for (CompiledComponent component : form.getComponents()) {
+            final List<DataIndex.IndexedValue> inspectedValue = dataIndex.get(component.getKey());
+            final ValidationRules rules = component.getRules(internal);
+
+            if (component.isInsideGrid()) {
+                validateFormGrid(jsonataData, component, rules, inspectedValue, 0, inspectedValue.size(), errors);
             } else {
-                errors.addAll(validateFormNormal(jsonataData, validationValue, inspectedValue));
+                validateFormNormal(jsonataData, component, rules, inspectedValue, errors);
             }
         }
 
         return errors;
     }
 
-    private Set<ValidationError> validateFormGrid(
-            final Object jsonataData,
-            final ValidationValue validationValue,
-            final ArrayNode inspectedValue) {
-        Set<ValidationError> errors = new HashSet<>();
-
-        for (int row = 0; row < inspectedValue.size(); row++) {
-            validationValue.setValue(inspectedValue.get(row));
-            validationValue.setRow(row);
-            errors.addAll(
-                    singleValueValidator.validateSingleValue(validationValue));
-            checkJsonnata(jsonataData, validationValue)
-                    .ifPresent(error -> errors.add(error));
+    /**
+     * The jsonata rules of a validation started at the given {@link System#nanoTime()} share the time left of
+     * {@code validator.request-budget-ms}.
+     */
+    JsonataData parseData(final JsonNode formdata, final String formdataText, final long startNanos) {
+        final JsonataData jsonataData = jsonataEngine.parseData(formdata, formdataText);
+        if (requestBudgetNanos > 0) {
+            jsonataData.setDeadlineNanos(startNanos + requestBudgetNanos);
         }
-
-        return errors;
+        return jsonataData;
     }
 
-    private Set<ValidationError> validateFormNormal(
-            final Object jsonataData,
-            final ValidationValue validationValue,
-            final ArrayNode inspectedValue) {
+    private void addUnits(
+            final List<ValidationUnit> units,
+            final CompiledComponent component,
+            final ValidationRules rules,
+            final List<DataIndex.IndexedValue> inspectedValue) {
+        if (!component.isInsideGrid()) {
+            units.add(new ValidationUnit(component, rules, inspectedValue, 0, inspectedValue.size()));
+            return;
+        }
+        for (int from = 0; from < inspectedValue.size(); from += gridChunkSize) {
+            units.add(new ValidationUnit(
+                    component, rules, inspectedValue, from, Math.min(from + gridChunkSize, inspectedValue.size())));
+        }
+    }
 
-        Set<ValidationError> errors = new HashSet<>();
-        validationValue.setValue(inspectedValue.get(0));
-        validationValue.setRow(null);
+    /**
+     * Validates a range of the rows of a grid column by column: the native rules run as loops over the extracted
+     * column, and a jsonata rule is evaluated for all rows in one call, or only once if it does not depend on the
+     * row. The errors are those of validating the rows one by one, in the same order.
+     */
+    private void validateFormGrid(
+            final JsonataData jsonataData,
+            final CompiledComponent component,
+            final ValidationRules rules,
+            final List<DataIndex.IndexedValue> inspectedValue,
+            final int from,
+            final int to,
+            final Set<ValidationError> errors) {
+        final GridColumn column = new GridColumn(inspectedValue, from, to);
+        final boolean[] violations = column.violations(rules, metrics);
+        String[] jsonataResults;
+        boolean timeout = false;
+        try {
+            jsonataResults = evaluateJsonataRows(jsonataData, rules.getJsonata(), column);
+        } catch (EvaluationTimeoutException e) {
+            jsonataResults = null;
+            timeout = true;
+        }
 
-        errors.addAll(
-                singleValueValidator.validateSingleValue(validationValue));
-        checkJsonnata(jsonataData, validationValue)
-                .ifPresent(error -> errors.add(error));
+        for (int index = 0; index < column.size(); index++) {
+            if (violations[index]) {
+                singleValueValidator.validateSingleValue(
+                        validationValue(component, rules, column.value(index), column.row(index), column.path(index)),
+                        column.match(index), errors);
+            }
+            if (jsonataResults != null && jsonataResults[index] != null
+                    && !Boolean.parseBoolean(jsonataResults[index])) {
+                errors.add(cfeateError(component.getKey(), column.row(index), column.path(index), JSONATA_KEY));
+            }
+            if (timeout) {
+                errors.add(cfeateError(component.getKey(), column.row(index), column.path(index), TIMEOUT_KEY));
+            }
+        }
+    }
 
-        return errors;
+    private String[] evaluateJsonataRows(
+            final JsonataData jsonataData, final String jsonataPattern, final GridColumn column) {
+        if (jsonataPattern == null || column.size() == 0) {
+            return null;
+        }
+        final long start = metrics.start();
+        try {
+            if (!JsonataDependencies.usesVariable(jsonataPattern, "rownum")) {
+                final String[] results = new String[column.size()];
+                Arrays.fill(results, jsonataEngine.validate(jsonataData, jsonataPattern, column.row(0)));
+                return results;
+            }
+            return jsonataEngine.validateRows(jsonataData, jsonataPattern, column.rows());
+        } finally {
+            metrics.recordRule(ValidationMetrics.JSONATA, start);
+        }
     }
 
-    private ArrayNode getInputsWithValidations(final DocumentContext formContext) {
-        return formContext.read(getInputsToValidate, ArrayNode.class);
+    private void validateFormNormal(
+            final JsonataData jsonataData,
+            final CompiledComponent component,
+            final ValidationRules rules,
+            final List<DataIndex.IndexedValue> inspectedValue,
+            final Set<ValidationError> errors) {
+        final DataIndex.IndexedValue first = inspectedValue.isEmpty() ? null : inspectedValue.get(0);
+        final ValidationValue validationValue = validationValue(
+                component, rules, first == null ? null : first.getValue(), null, first == null ? null : first.getPath());
+
+        singleValueValidator.validateSingleValue(validationValue, errors);
+        checkJsonnata(jsonataData, validationValue)
+                .ifPresent(error -> errors.add(error));
     }
 
-    private Set<String> getInputKeysInsideGrids(final DocumentContext formContext) {
-        return formContext.read(getInputKeysInsideGrids, Set.class);
+    ValidationValue validationValue(
+            final CompiledComponent component,
+            final ValidationRules rules,
+            final JsonNode value,
+            final Integer row,
+            final DataPath path) {
+        final ValidationValue validationValue = new ValidationValue();
+        validationValue.setKey(component.getKey());
+        validationValue.setType(component.getType());
+        validationValue.setRules(rules);
+        validationValue.setValue(value);
+        validationValue.setRow(row);
+        validationValue.setPath(path);
+        return validationValue;
     }
 
-    private Optional<ValidationError> checkJsonnata(
-            final Object jsonataData,
+    Optional<ValidationError> checkJsonnata(
+            final JsonataData jsonataData,
             final ValidationValue validationValue) {
-        final String jsonataPattern =
-                singleValueValidator.extractValidationInstruction(validationValue.getInstruction(), JSONATA_KEY, validationValue.isInternal())
-                        .map(JsonNode::asText)
-                        .orElse(null);
+        final String jsonataPattern = validationValue.getRules().getJsonata();
         if (jsonataPattern != null) {
-            String compiledJsonataPattern =
-                    Optional.ofNullable(validationValue.getValue())
-                            .map(rowInt -> rowInt.toString())
-                            .map(rowString -> jsonataPattern.replace(ROW_NUM_PLACEHOLER, rowString))
-                            .orElse(jsonataPattern);
+            final long start = metrics.start();
+            try {
+                return Optional.ofNullable(jsonataEngine.validate(jsonataData, jsonataPattern, validationValue.getRow()))
+                        .map(jsonataResult -> Boolean.parseBoolean(jsonataResult))
+                        .map(valid -> !valid ? cfeateError(validationValue.getKey(), validationValue.getRow(),
+                                validationValue.getPath(), JSONATA_KEY) : null);
+            } catch (EvaluationTimeoutException e) {
+                return Optional.of(cfeateError(
+                        validationValue.getKey(), validationValue.getRow(), validationValue.getPath(), TIMEOUT_KEY));
+            } finally {
+                metrics.recordRule(ValidationMetrics.JSONATA, start);
+            }
+        }
+
+        return Optional.empty();
+    }
 
-            compiledJsonataPattern = compiledJsonataPattern.replace(CURRENT_DATE_PLACEHOLER, Instant.now().toString());
+    private ValidationError cfeateError(
+            final String key, final Integer row, final DataPath path, final String violation) {
+        return new ValidationError().key(key).violation(violation).row(row).path(path == null ? null : path.toString());
+    }
 
-            return Optional.ofNullable(jsonataEngine.validate(jsonataData, compiledJsonataPattern))
-                    .map(jsonataResult -> Boolean.parseBoolean(jsonataResult))
-                    .map(valid -> !valid ? cfeateError(validationValue.getKey(), validationValue.getRow(), JSONATA_KEY) : null);
+    @PreDestroy
+    public void shutdown() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
         }
+    }
 
-        return Optional.empty();
+    /**
+     * A component, or a range of rows of a grid component, validated independently of all others.
+     */
+    private static final class ValidationUnit {
+        private final CompiledComponent component;
+        private final ValidationRules rules;
+        private final List<DataIndex.IndexedValue> inspectedValue;
+        private final int from;
+        private final int to;
+
+        private ValidationUnit(
+                final CompiledComponent component,
+                final ValidationRules rules,
+                final List<DataIndex.IndexedValue> inspectedValue,
+                final int from,
+                final int to) {
+            this.component = component;
+            this.rules = rules;
+            this.inspectedValue = inspectedValue;
+            this.from = from;
+            this.to = to;
+        }
     }
 
-    private ValidationError cfeateError(final String key, final Integer row, final String violation) {
-        return new ValidationError().key(key).violation(violation);
+    /**
+     * Splits the units in halves until single units remain. Errors of the left half come before those of the right
+     * half, so the merged result does not depend on scheduling.
+     */
+    private final class ValidationFork extends RecursiveTask<Set<ValidationError>> {
+        private final JsonataData jsonataData;
+        private final List<ValidationUnit> units;
+        private final int from;
+        private final int to;
+
+        private ValidationFork(
+                final JsonataData jsonataData, final List<ValidationUnit> units, final int from, final int to) {
+            this.jsonataData = jsonataData;
+            this.units = units;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Set<ValidationError> compute() {
+            if (to - from == 1) {
+                final ValidationUnit unit = units.get(from);
+                final Set<ValidationError> errors = new LinkedHashSet<>();
+                if (unit.component.isInsideGrid()) {
+                    validateFormGrid(
+                            jsonataData, unit.component, unit.rules, unit.inspectedValue, unit.from, unit.to, errors);
+                } else {
+                    validateFormNormal(jsonataData, unit.component, unit.rules, unit.inspectedValue, errors);
+                }
+                return errors;
+            }
+            if (to - from == 0) {
+                return new LinkedHashSet<>();
+            }
+
+            final int middle = (from + to) >>> 1;
+            final ValidationFork right = new ValidationFork(jsonataData, units, middle, to);
+            right.fork();
+            final Set<ValidationError> errors = new ValidationFork(jsonataData, units, from, middle).compute();
+            errors.addAll(right.join());
+            return errors;
+        }
     }
 }
\ No newline at end of file
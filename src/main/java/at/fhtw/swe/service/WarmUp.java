@@ -0,0 +1,154 @@
+package at.fhtw.swe.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+/**
+ * Validates a set of representative forms right after the start, until every jsonata engine of the pool has run
+ * them and the JIT has compiled the hot paths. When enabled, the instance only reports itself healthy once the
+ * warm-up is done, so it does not take traffic while the first requests would still be many times slower. The
+ * warm-up validations are not recorded in the metrics, which only show the validations of requests.
+ *
+ * Every {@code <name>.form.json} at the configured location is validated with the {@code <name>.data.json} next to
+ * it; the application ships no forms of its own. With {@code validator.warm-up.exit-when-ready} the application
+ * stops after the warm-up, which makes it a training run for a class-data sharing archive.
+ */
+@Component
+public class WarmUp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final String FORM_SUFFIX = ".form.json";
+    private static final String DATA_SUFFIX = ".data.json";
+
+    private final transient Validator validator;
+    private final transient JsonataEngine jsonataEngine;
+    private final transient ApplicationContext applicationContext;
+    private final transient boolean enabled;
+    private final transient String location;
+    private final transient int iterations;
+    private final transient long maxDurationMillis;
+    private final transient boolean exitWhenReady;
+
+    private volatile boolean ready;
+
+    public WarmUp(
+            final Validator validator,
+            final JsonataEngine jsonataEngine,
+            final ApplicationContext applicationContext,
+            @Value("${validator.warm-up.enabled:false}") final boolean enabled,
+            @Value("${validator.warm-up.location:}") final String location,
+            @Value("${validator.warm-up.iterations:200}") final int iterations,
+            @Value("${validator.warm-up.max-duration-ms:60000}") final long maxDurationMillis,
+            @Value("${validator.warm-up.exit-when-ready:false}") final boolean exitWhenReady) {
+        this.validator = validator;
+        this.jsonataEngine = jsonataEngine;
+        this.applicationContext = applicationContext;
+        this.enabled = enabled;
+        this.location = location;
+        this.iterations = iterations;
+        this.maxDurationMillis = maxDurationMillis;
+        this.exitWhenReady = exitWhenReady;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            ready(0);
+            return;
+        }
+        if (location.isEmpty()) {
+            LOG.warn("validator.warm-up.location is not set, there is nothing to warm up with");
+            ready(0);
+            return;
+        }
+        final Thread thread = new Thread(this::run, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        final long start = System.nanoTime();
+        try {
+            final List<String[]> samples = samples();
+            final Validator unrecorded = validator.withoutMetrics();
+            final int threads = jsonataEngine.getStatistics().getSize();
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            final long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+            for (int thread = 0; thread < threads; thread++) {
+                executor.execute(() -> validate(unrecorded, samples, deadline));
+            }
+            executor.shutdown();
+            executor.awaitTermination(maxDurationMillis, TimeUnit.MILLISECONDS);
+            executor.shutdownNow();
+        } catch (IOException e) {
+            LOG.warn("warm-up samples could not be read", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ready(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void validate(final Validator validator, final List<String[]> samples, final long deadline) {
+        try {
+            for (int iteration = 0; iteration < iterations && System.nanoTime() < deadline; iteration++) {
+                for (String[] sample : samples) {
+                    validator.validateForm(sample[0], sample[1], true);
+                    validator.validateForm(sample[0], sample[1], false);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("warm-up stopped early", e);
+        }
+    }
+
+    private List<String[]> samples() throws IOException {
+        final List<String[]> samples = new ArrayList<>();
+        for (Resource form : new PathMatchingResourcePatternResolver().getResources(location + "*" + FORM_SUFFIX)) {
+            final String name = form.getFilename();
+            final Resource data = form.createRelative(
+                    name.substring(0, name.length() - FORM_SUFFIX.length()) + DATA_SUFFIX);
+            samples.add(new String[]{read(form), read(data)});
+        }
+        return samples;
+    }
+
+    private static String read(final Resource resource) throws IOException {
+        try (InputStream stream = resource.getInputStream();
+             Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private void ready(final long warmUpMillis) {
+        ready = true;
+        LOG.info("Ready {}ms after the start of the JVM, warm-up took {}ms",
+                ManagementFactory.getRuntimeMXBean().getUptime(), warmUpMillis);
+        if (exitWhenReady) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a syntax tree into nested closures, so the dispatch on the node types happens once instead of on every
+ * evaluation. On top of that, the shapes the templates use most are specialized:
+ * <ul>
+ * <li>paths of plain names walk the objects directly as long as they meet no arrays,</li>
+ * <li>predicates that do not read the item they filter, like {@code [$rownum]}, are evaluated once per step and
+ * select by index instead of being evaluated for every item.</li>
+ * </ul>
+ * The results are exactly those of the {@link Interpreter}.
+ */
+final class Compiler {
+
+    private Compiler() {
+    }
+
+    static Evaluator compile(final Node node) {
+        Evaluator evaluator = compileNode(node);
+        if (!node.predicates.isEmpty()) {
+            evaluator = withPredicates(evaluator, node.predicates);
+        }
+        if (!(node instanceof Node.Literal || node instanceof Node.Binary || node instanceof Node.Negation)
+                || !node.predicates.isEmpty()) {
+            final Evaluator unwrapped = evaluator;
+            evaluator = (input, bindings) -> {
+                final JsonNode result = unwrapped.evaluate(input, bindings);
+                return result instanceof Sequence ? ((Sequence) result).value() : result;
+            };
+        }
+        return evaluator;
+    }
+
+    private static Evaluator compileNode(final Node node) {
+        if (node instanceof Node.Path) {
+            return compilePath((Node.Path) node);
+        }
+        if (node instanceof Node.Name) {
+            final String name = ((Node.Name) node).name;
+            return (input, bindings) -> Interpreter.evaluateName(name, input);
+        }
+        if (node instanceof Node.Literal) {
+            final JsonNode value = ((Node.Literal) node).value;
+            return (input, bindings) -> value;
+        }
+        if (node instanceof Node.Variable) {
+            final String name = ((Node.Variable) node).name;
+            if (name.isEmpty()) {
+                return (input, bindings) -> input;
+            }
+            return (input, bindings) -> bindings.get(name);
+        }
+        if (node instanceof Node.Binary) {
+            return compileBinary((Node.Binary) node);
+        }
+        if (node instanceof Node.Negation) {
+            final Evaluator expression = compile(((Node.Negation) node).expression);
+            return (input, bindings) -> Interpreter.negate(expression.evaluate(input, bindings));
+        }
+        if (node instanceof Node.Condition) {
+            final Node.Condition condition = (Node.Condition) node;
+            final Evaluator test = compile(condition.condition);
+            final Evaluator then = compile(condition.then);
+            final Evaluator otherwise = condition.otherwise == null ? null : compile(condition.otherwise);
+            return (input, bindings) -> {
+                if (Values.isTruthy(Values.toBoolean(test.evaluate(input, bindings)))) {
+                    return then.evaluate(input, bindings);
+                }
+                return otherwise == null ? null : otherwise.evaluate(input, bindings);
+            };
+        }
+        if (node instanceof Node.Block) {
+            return compile(((Node.Block) node).expression);
+        }
+        return compileCall((Node.Call) node);
+    }
+
+    private static Evaluator compilePath(final Node.Path path) {
+        final Evaluator[] steps = new Evaluator[path.steps.size()];
+        for (int index = 0; index < steps.length; index++) {
+            steps[index] = compile(path.steps.get(index));
+        }
+        final boolean absolute = path.steps.get(0) instanceof Node.Variable;
+        final Evaluator general = (input, bindings) -> evaluatePath(steps, absolute, input, bindings);
+
+        final String[] names = new String[path.steps.size()];
+        for (int index = 0; index < names.length; index++) {
+            final Node step = path.steps.get(index);
+            if (!(step instanceof Node.Name) || !step.predicates.isEmpty()) {
+                return general;
+            }
+            names[index] = ((Node.Name) step).name;
+        }
+
+        return (input, bindings) -> {
+            JsonNode current = input;
+            for (String name : names) {
+                if (current == null) {
+                    return null;
+                }
+                if (current.isArray()) {
+                    return general.evaluate(input, bindings);
+                }
+                if (!current.isObject()) {
+                    return null;
+                }
+                current = current.get(name);
+            }
+            return current;
+        };
+    }
+
+    private static JsonNode evaluatePath(
+            final Evaluator[] steps, final boolean absolute, final JsonNode input, final Map<String, JsonNode> bindings) {
+        List<JsonNode> inputs = absolute || input == null || !input.isArray()
+                ? Collections.singletonList(input)
+                : Interpreter.items(input);
+
+        JsonNode result = null;
+        for (int index = 0; index < steps.length; index++) {
+            result = evaluateStep(steps[index], inputs, bindings, index == steps.length - 1);
+            if (result.size() == 0) {
+                break;
+            }
+            inputs = Interpreter.items(result);
+        }
+        return result;
+    }
+
+    private static JsonNode evaluateStep(
+            final Evaluator step, final List<JsonNode> inputs, final Map<String, JsonNode> bindings,
+            final boolean lastStep) {
+        if (inputs.size() == 1) {
+            final JsonNode result = step.evaluate(inputs.get(0), bindings);
+            if (lastStep && result != null && result.isArray() && !(result instanceof Sequence)) {
+                return result;
+            }
+            final Sequence sequence = new Sequence();
+            if (result != null) {
+                if (result.isArray()) {
+                    sequence.addAll((ArrayNode) result);
+                } else {
+                    sequence.add(result);
+                }
+            }
+            return sequence;
+        }
+
+        final List<JsonNode> results = new ArrayList<>(inputs.size());
+        for (JsonNode item : inputs) {
+            Deadline.check();
+            final JsonNode result = step.evaluate(item, bindings);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        if (lastStep && results.size() == 1 && results.get(0).isArray() && !(results.get(0) instanceof Sequence)) {
+            return results.get(0);
+        }
+        final Sequence sequence = new Sequence();
+        for (JsonNode result : results) {
+            if (result.isArray()) {
+                sequence.addAll((ArrayNode) result);
+            } else {
+                sequence.add(result);
+            }
+        }
+        return sequence;
+    }
+
+    private static Evaluator withPredicates(final Evaluator evaluator, final List<Node> predicates) {
+        final Predicate[] compiled = new Predicate[predicates.size()];
+        for (int index = 0; index < compiled.length; index++) {
+            compiled[index] = compilePredicate(predicates.get(index));
+        }
+        return (input, bindings) -> {
+            JsonNode results = evaluator.evaluate(input, bindings);
+            for (Predicate predicate : compiled) {
+                if (results == null) {
+                    return null;
+                }
+                results = predicate.apply(results, bindings);
+            }
+            return results;
+        };
+    }
+
+    /**
+     * One predicate applied to the result of a step, an array or a single value.
+     */
+    @FunctionalInterface
+    private interface Predicate {
+        JsonNode apply(JsonNode values, Map<String, JsonNode> bindings);
+    }
+
+    private static Predicate compilePredicate(final Node predicate) {
+        if (predicate instanceof Node.Literal && predicate.predicates.isEmpty()
+                && ((Node.Literal) predicate).value.isNumber()) {
+            final double number = ((Node.Literal) predicate).value.doubleValue();
+            return (values, bindings) -> {
+                final int size = values.isArray() ? values.size() : 1;
+                final int index = Interpreter.index(number, size);
+                return index >= 0 && index < size ? item(values, index) : null;
+            };
+        }
+
+        final Evaluator evaluator = compile(predicate);
+        if (isIndependentOfContext(predicate)) {
+            return (values, bindings) -> {
+                final int size = values.isArray() ? values.size() : 1;
+                final Sequence results = new Sequence();
+                if (size == 0) {
+                    return results;
+                }
+                final JsonNode result = evaluator.evaluate(null, bindings);
+                if (Values.isNumeric(result)) {
+                    final int index = Interpreter.index(result.doubleValue(), size);
+                    if (index >= 0 && index < size) {
+                        results.add(item(values, index));
+                    }
+                } else if (Interpreter.isArrayOfNumbers(result)) {
+                    for (int index = 0; index < size; index++) {
+                        for (JsonNode number : result) {
+                            if (Interpreter.index(number.doubleValue(), size) == index) {
+                                results.add(item(values, index));
+                            }
+                        }
+                    }
+                } else if (Values.isTruthy(Values.toBoolean(result))) {
+                    for (int index = 0; index < size; index++) {
+                        results.add(item(values, index));
+                    }
+                }
+                return results;
+            };
+        }
+
+        return (values, bindings) -> {
+            final int size = values.isArray() ? values.size() : 1;
+            final Sequence results = new Sequence();
+            for (int index = 0; index < size; index++) {
+                final JsonNode item = item(values, index);
+                Deadline.check();
+                final JsonNode result = evaluator.evaluate(item, bindings);
+                if (Values.isNumeric(result)) {
+                    if (Interpreter.index(result.doubleValue(), size) == index) {
+                        results.add(item);
+                    }
+                } else if (Interpreter.isArrayOfNumbers(result)) {
+                    for (JsonNode number : result) {
+                        if (Interpreter.index(number.doubleValue(), size) == index) {
+                            results.add(item);
+                        }
+                    }
+                } else if (Values.isTruthy(Values.toBoolean(result))) {
+                    results.add(item);
+                }
+            }
+            return results;
+        };
+    }
+
+    private static JsonNode item(final JsonNode values, final int index) {
+        return values.isArray() ? values.get(index) : values;
+    }
+
+    /**
+     * Whether an expression gives the same result for every context item: it reads variables and literals only.
+     */
+    static boolean isIndependentOfContext(final Node node) {
+        if (node instanceof Node.Literal) {
+            return true;
+        }
+        if (node instanceof Node.Variable) {
+            return !((Node.Variable) node).name.isEmpty();
+        }
+        if (node instanceof Node.Path) {
+            return isIndependentOfContext(((Node.Path) node).steps.get(0));
+        }
+        if (node instanceof Node.Binary) {
+            return isIndependentOfContext(((Node.Binary) node).lhs) && isIndependentOfContext(((Node.Binary) node).rhs);
+        }
+        if (node instanceof Node.Negation) {
+            return isIndependentOfContext(((Node.Negation) node).expression);
+        }
+        if (node instanceof Node.Block) {
+            return isIndependentOfContext(((Node.Block) node).expression);
+        }
+        if (node instanceof Node.Condition) {
+            final Node.Condition condition = (Node.Condition) node;
+            return isIndependentOfContext(condition.condition) && isIndependentOfContext(condition.then)
+                    && (condition.otherwise == null || isIndependentOfContext(condition.otherwise));
+        }
+        if (node instanceof Node.Call) {
+            for (Node argument : ((Node.Call) node).arguments) {
+                if (!isIndependentOfContext(argument)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static Evaluator compileBinary(final Node.Binary node) {
+        final Evaluator lhs = compile(node.lhs);
+        final Evaluator rhs = compile(node.rhs);
+        final String operator = node.operator;
+
+        switch (operator) {
+            case "+":
+            case "-":
+            case "*":
+            case "/":
+            case "%":
+                return (input, bindings) ->
+                        Interpreter.arithmetic(operator, lhs.evaluate(input, bindings), rhs.evaluate(input, bindings));
+            case "=":
+            case "!=":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return (input, bindings) -> BooleanNode.valueOf(
+                        Interpreter.compare(operator, lhs.evaluate(input, bindings), rhs.evaluate(input, bindings)));
+            case "&":
+                return (input, bindings) -> {
+                    final JsonNode left = lhs.evaluate(input, bindings);
+                    final JsonNode right = rhs.evaluate(input, bindings);
+                    return TextNode.valueOf(
+                            (left == null ? "" : Values.toText(left)) + (right == null ? "" : Values.toText(right)));
+                };
+            case "and":
+                return (input, bindings) -> {
+                    final Boolean left = Values.toBoolean(lhs.evaluate(input, bindings));
+                    final Boolean right = Values.toBoolean(rhs.evaluate(input, bindings));
+                    return Interpreter.bool(Values.isTruthy(left) ? right : left);
+                };
+            case "or":
+                return (input, bindings) -> {
+                    final Boolean left = Values.toBoolean(lhs.evaluate(input, bindings));
+                    final Boolean right = Values.toBoolean(rhs.evaluate(input, bindings));
+                    return Interpreter.bool(Values.isTruthy(left) ? Boolean.TRUE : right);
+                };
+            default:
+                return (input, bindings) ->
+                        BooleanNode.valueOf(Interpreter.includes(lhs.evaluate(input, bindings), rhs.evaluate(input, bindings)));
+        }
+    }
+
+    private static Evaluator compileCall(final Node.Call node) {
+        final Evaluator[] arguments = new Evaluator[node.arguments.size()];
+        for (int index = 0; index < arguments.length; index++) {
+            arguments[index] = compile(node.arguments.get(index));
+        }
+        final Functions.BuiltIn function = node.function;
+        return (input, bindings) -> {
+            final List<JsonNode> values = new ArrayList<>(arguments.length);
+            for (Evaluator argument : arguments) {
+                values.add(argument.evaluate(input, bindings));
+            }
+            return function.apply(values);
+        };
+    }
+}
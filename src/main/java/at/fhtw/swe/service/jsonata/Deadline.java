@@ -0,0 +1,46 @@
+package at.fhtw.swe.service.jsonata;
+
+/**
+ * The end of the time budget of the evaluation running on the current thread. The loops over the items of the data
+ * check it, reading the clock every few hundred items, so a runaway expression ends with a
+ * {@link JsonataTimeoutException} instead of occupying its thread.
+ */
+final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private static final int CHECK_INTERVAL = 256;
+
+    private final long endNanos;
+    private int countdown = CHECK_INTERVAL;
+
+    private Deadline(final long endNanos) {
+        this.endNanos = endNanos;
+    }
+
+    /**
+     * @return the deadline replaced, to be restored with {@link #restore(Deadline)}
+     */
+    static Deadline start(final long budgetNanos) {
+        final Deadline previous = CURRENT.get();
+        CURRENT.set(new Deadline(System.nanoTime() + budgetNanos));
+        return previous;
+    }
+
+    static void restore(final Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    static void check() {
+        final Deadline deadline = CURRENT.get();
+        if (deadline != null && --deadline.countdown <= 0) {
+            deadline.countdown = CHECK_INTERVAL;
+            if (System.nanoTime() - deadline.endNanos > 0) {
+                throw new JsonataTimeoutException("The evaluation exceeded its time budget");
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+
+/**
+ * A compiled expression or part of one.
+ */
+@FunctionalInterface
+interface Evaluator {
+
+    JsonNode evaluate(JsonNode input, Map<String, JsonNode> bindings);
+}
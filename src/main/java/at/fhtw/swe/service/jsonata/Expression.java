@@ -0,0 +1,91 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A jsonata expression evaluated natively against Jackson trees, for the subset of jsonata the templates use: paths,
+ * predicates, literals, variables, arithmetic, comparison and boolean operators, conditions and the common built-in
+ * functions. Results are those of the jsonata 1.5 reference implementation. Thread-safe.
+ *
+ * An expression is interpreted until it has been evaluated a number of times, then it compiles itself to closures
+ * and runs those from there on. Rules used once per request do not pay for the compilation, rules evaluated for every
+ * row of a grid do not pay for the interpretation.
+ */
+public final class Expression {
+
+    private final Node root;
+    private final int compileThreshold;
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private volatile Evaluator compiled;
+
+    private Expression(final Node root, final int compileThreshold) {
+        this.root = root;
+        this.compileThreshold = compileThreshold;
+    }
+
+    /**
+     * @param compileThreshold the evaluations after which the expression is compiled, 0 compiles it at once, a
+     * negative threshold never
+     * @throws JsonataException if the expression is invalid or uses constructs outside of the supported subset
+     */
+    public static Expression parse(final String expression, final int compileThreshold) {
+        return new Expression(Parser.parse(expression), compileThreshold);
+    }
+
+    /**
+     * @param input the document, available as the context and as {@code $$}
+     * @param bindings values of the variables, by name without the {@code $}
+     * @return the result, {@code null} if it is undefined
+     * @throws JsonataException if the evaluation fails
+     */
+    public JsonNode evaluate(final JsonNode input, final Map<String, JsonNode> bindings) {
+        return evaluate(input, bindings, 0);
+    }
+
+    /**
+     * @param budgetNanos the time the evaluation may take, unlimited if not positive
+     * @throws JsonataTimeoutException if the evaluation runs out of its budget
+     * @throws JsonataException if the evaluation fails
+     */
+    public JsonNode evaluate(final JsonNode input, final Map<String, JsonNode> bindings, final long budgetNanos) {
+        final Map<String, JsonNode> variables = new HashMap<>(bindings);
+        variables.put("$", input);
+
+        Evaluator evaluator = compiled;
+        if (evaluator == null && compileThreshold >= 0 && evaluations.incrementAndGet() > compileThreshold) {
+            // racing threads may compile twice, the closures are equivalent
+            evaluator = Compiler.compile(root);
+            compiled = evaluator;
+        }
+        if (budgetNanos <= 0) {
+            return evaluate(evaluator, input, variables);
+        }
+        final Deadline previous = Deadline.start(budgetNanos);
+        try {
+            return evaluate(evaluator, input, variables);
+        } finally {
+            Deadline.restore(previous);
+        }
+    }
+
+    private JsonNode evaluate(final Evaluator evaluator, final JsonNode input, final Map<String, JsonNode> variables) {
+        return evaluator != null
+                ? evaluator.evaluate(input, variables)
+                : Interpreter.evaluate(root, input, variables);
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * The result as {@code JSON.stringify} in javascript would write it, {@code null} if it is undefined.
+     */
+    public static String stringify(final JsonNode result) {
+        return Values.stringify(result);
+    }
+}
@@ -0,0 +1,251 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The built-in functions of the native evaluator, with the argument checks of their jsonata signatures. Only calls
+ * with all arguments given are supported; the context is never used as an implicit argument.
+ */
+final class Functions {
+
+    /**
+     * The gate of {@code $toMillis} in jsonata; strings passing it are then parsed like {@code Date.parse} of nashorn
+     * does, which reads up to three fraction digits as a number of milliseconds.
+     */
+    private static final Pattern ISO_8601 = Pattern.compile(
+            "^\\d{4}(-[01]\\d)*(-[0-3]\\d)*(T[0-2]\\d:[0-5]\\d:[0-5]\\d)*(\\.\\d+)?([+-][0-2]\\d:?[0-5]\\d|Z)?$");
+    private static final Pattern DATE_TIME = Pattern.compile(
+            "(\\d{4})(?:-(\\d{2})(?:-(\\d{2}))?)?(?:T(\\d{2}):(\\d{2}):(\\d{2})(?:\\.(\\d{1,3}))?(Z|[+-]\\d{2}:\\d{2})?)?");
+
+    private static final Map<String, BuiltIn> BUILT_INS = new HashMap<>();
+
+    static {
+        register("boolean", 1, arguments -> bool(Values.toBoolean(arguments.get(0))));
+        register("not", 1, arguments -> BooleanNode.valueOf(!Values.isTruthy(Values.toBoolean(arguments.get(0)))));
+        register("exists", 1, arguments -> BooleanNode.valueOf(arguments.get(0) != null));
+        register("string", 1, arguments -> arguments.get(0) == null
+                ? null
+                : TextNode.valueOf(Values.toText(arguments.get(0))));
+        register("number", 1, arguments -> number(arguments.get(0)));
+        register("length", 1, arguments -> {
+            final String text = string(arguments.get(0), "length");
+            return text == null ? null : IntNode.valueOf(text.codePointCount(0, text.length()));
+        });
+        register("uppercase", 1, arguments -> {
+            final String text = string(arguments.get(0), "uppercase");
+            return text == null ? null : TextNode.valueOf(text.toUpperCase(Locale.ROOT));
+        });
+        register("lowercase", 1, arguments -> {
+            final String text = string(arguments.get(0), "lowercase");
+            return text == null ? null : TextNode.valueOf(text.toLowerCase(Locale.ROOT));
+        });
+        register("trim", 1, arguments -> {
+            final String text = string(arguments.get(0), "trim");
+            return text == null ? null : TextNode.valueOf(trim(text));
+        });
+        register("count", 1, arguments -> {
+            final List<JsonNode> items = array(arguments.get(0));
+            return IntNode.valueOf(items == null ? 0 : items.size());
+        });
+        register("sum", 1, arguments -> {
+            final List<JsonNode> numbers = numbers(arguments.get(0), "sum");
+            return numbers == null ? null : Values.number(sum(numbers));
+        });
+        register("average", 1, arguments -> {
+            final List<JsonNode> numbers = numbers(arguments.get(0), "average");
+            return numbers == null || numbers.isEmpty() ? null : Values.number(sum(numbers) / numbers.size());
+        });
+        register("max", 1, arguments -> {
+            final List<JsonNode> numbers = numbers(arguments.get(0), "max");
+            return numbers == null || numbers.isEmpty()
+                    ? null
+                    : Values.number(numbers.stream().mapToDouble(JsonNode::doubleValue).reduce(Math::max).getAsDouble());
+        });
+        register("min", 1, arguments -> {
+            final List<JsonNode> numbers = numbers(arguments.get(0), "min");
+            return numbers == null || numbers.isEmpty()
+                    ? null
+                    : Values.number(numbers.stream().mapToDouble(JsonNode::doubleValue).reduce(Math::min).getAsDouble());
+        });
+        register("abs", 1, arguments -> math(arguments.get(0), "abs", Math::abs));
+        register("floor", 1, arguments -> math(arguments.get(0), "floor", Math::floor));
+        register("ceil", 1, arguments -> math(arguments.get(0), "ceil", Math::ceil));
+        register("toMillis", 1, arguments -> toMillis(string(arguments.get(0), "toMillis")));
+    }
+
+    private Functions() {
+    }
+
+    static BuiltIn get(final String name) {
+        return BUILT_INS.get(name);
+    }
+
+    static final class BuiltIn {
+        final int arity;
+        private final Function<List<JsonNode>, JsonNode> implementation;
+
+        private BuiltIn(final int arity, final Function<List<JsonNode>, JsonNode> implementation) {
+            this.arity = arity;
+            this.implementation = implementation;
+        }
+
+        JsonNode apply(final List<JsonNode> arguments) {
+            return implementation.apply(arguments);
+        }
+    }
+
+    private static void register(
+            final String name, final int arity, final Function<List<JsonNode>, JsonNode> implementation) {
+        BUILT_INS.put(name, new BuiltIn(arity, implementation));
+    }
+
+    private static JsonNode bool(final Boolean value) {
+        return value == null ? null : BooleanNode.valueOf(value);
+    }
+
+    private static String string(final JsonNode argument, final String function) {
+        if (argument == null) {
+            return null;
+        }
+        if (!argument.isTextual()) {
+            throw argumentError(function);
+        }
+        return argument.textValue();
+    }
+
+    private static List<JsonNode> array(final JsonNode argument) {
+        if (argument == null) {
+            return null;
+        }
+        if (!argument.isArray()) {
+            return Collections.singletonList(argument);
+        }
+        final List<JsonNode> items = new ArrayList<>(argument.size());
+        argument.forEach(items::add);
+        return items;
+    }
+
+    private static List<JsonNode> numbers(final JsonNode argument, final String function) {
+        final List<JsonNode> items = array(argument);
+        if (items != null) {
+            for (JsonNode item : items) {
+                if (!item.isNumber()) {
+                    throw new JsonataException("T0412: argument 1 of function $" + function
+                            + " must be an array of numbers");
+                }
+            }
+        }
+        return items;
+    }
+
+    private static double sum(final List<JsonNode> numbers) {
+        double total = 0;
+        for (JsonNode number : numbers) {
+            total += number.doubleValue();
+        }
+        return total;
+    }
+
+    private static JsonNode math(
+            final JsonNode argument, final String function, final Function<Double, Double> operation) {
+        if (argument == null) {
+            return null;
+        }
+        if (!argument.isNumber()) {
+            throw argumentError(function);
+        }
+        return Values.number(operation.apply(argument.doubleValue()));
+    }
+
+    private static JsonNode number(final JsonNode argument) {
+        if (argument == null) {
+            return null;
+        }
+        if (argument.isNumber()) {
+            return argument;
+        }
+        if (!argument.isTextual()) {
+            throw argumentError("number");
+        }
+        final String text = argument.textValue();
+        if (text.matches("-?(0|([1-9][0-9]*))(\\.[0-9]+)?([Ee][-+]?[0-9]+)?")) {
+            final double value = Double.parseDouble(text);
+            if (!Double.isInfinite(value)) {
+                return Values.number(value);
+            }
+        }
+        throw new JsonataException("D3030: unable to cast value to a number: " + text);
+    }
+
+    private static String trim(final String text) {
+        String result = text.replaceAll("[ \t\n\r]+", " ");
+        if (result.startsWith(" ")) {
+            result = result.substring(1);
+        }
+        if (result.endsWith(" ")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    private static JsonNode toMillis(final String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        if (!ISO_8601.matcher(timestamp).matches()) {
+            throw new JsonataException("D3110: unable to parse timestamp " + timestamp);
+        }
+
+        final Matcher parts = DATE_TIME.matcher(timestamp);
+        if (!parts.matches()) {
+            return Values.number(Double.NaN);
+        }
+        try {
+            final int day = parts.group(3) == null ? 1 : Integer.parseInt(parts.group(3));
+            if (day < 1 || day > 31) {
+                return Values.number(Double.NaN);
+            }
+            // days beyond the end of the month roll over into the next one
+            final LocalDate date = LocalDate.of(
+                    Integer.parseInt(parts.group(1)),
+                    parts.group(2) == null ? 1 : Integer.parseInt(parts.group(2)),
+                    1).plusDays(day - 1);
+            final LocalTime time = parts.group(4) == null
+                    ? LocalTime.MIDNIGHT
+                    : LocalTime.of(
+                            Integer.parseInt(parts.group(4)),
+                            Integer.parseInt(parts.group(5)),
+                            Integer.parseInt(parts.group(6)),
+                            parts.group(7) == null ? 0 : Integer.parseInt(parts.group(7)) * 1_000_000);
+            final ZoneOffset offset = parts.group(8) == null || parts.group(8).equals("Z")
+                    ? ZoneOffset.UTC
+                    : ZoneOffset.of(parts.group(8));
+            return LongNode.valueOf(LocalDateTime.of(date, time).toInstant(offset).toEpochMilli());
+        } catch (DateTimeException e) {
+            return Values.number(Double.NaN);
+        }
+    }
+
+    private static JsonataException argumentError(final String function) {
+        return new JsonataException("T0410: argument 1 of function $" + function + " does not match its signature");
+    }
+}
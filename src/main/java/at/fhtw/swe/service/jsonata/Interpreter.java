@@ -0,0 +1,317 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a syntax tree against a Jackson tree with the semantics of jsonata 1.5: paths map over sequences and
+ * flatten them, predicates select by index or filter by truthiness, and undefined ({@code null}) propagates through
+ * functions and operators.
+ */
+final class Interpreter {
+
+    private Interpreter() {
+    }
+
+    static JsonNode evaluate(final Node node, final JsonNode input, final Map<String, JsonNode> bindings) {
+        JsonNode result;
+        if (node instanceof Node.Path) {
+            result = evaluatePath((Node.Path) node, input, bindings);
+        } else if (node instanceof Node.Name) {
+            result = evaluateName(((Node.Name) node).name, input);
+        } else if (node instanceof Node.Literal) {
+            result = ((Node.Literal) node).value;
+        } else if (node instanceof Node.Variable) {
+            final String name = ((Node.Variable) node).name;
+            result = name.isEmpty() ? input : bindings.get(name);
+        } else if (node instanceof Node.Binary) {
+            result = evaluateBinary((Node.Binary) node, input, bindings);
+        } else if (node instanceof Node.Negation) {
+            result = negate(evaluate(((Node.Negation) node).expression, input, bindings));
+        } else if (node instanceof Node.Condition) {
+            result = evaluateCondition((Node.Condition) node, input, bindings);
+        } else if (node instanceof Node.Block) {
+            result = evaluate(((Node.Block) node).expression, input, bindings);
+        } else {
+            result = evaluateCall((Node.Call) node, input, bindings);
+        }
+
+        if (!node.predicates.isEmpty()) {
+            result = applyPredicates(node.predicates, result, bindings);
+        }
+        return result instanceof Sequence ? ((Sequence) result).value() : result;
+    }
+
+    private static JsonNode evaluatePath(final Node.Path path, final JsonNode input, final Map<String, JsonNode> bindings) {
+        List<JsonNode> inputs = path.steps.get(0) instanceof Node.Variable || input == null || !input.isArray()
+                ? Collections.singletonList(input)
+                : items(input);
+
+        JsonNode result = null;
+        for (int index = 0; index < path.steps.size(); index++) {
+            result = evaluateStep(path.steps.get(index), inputs, bindings, index == path.steps.size() - 1);
+            if (result.size() == 0) {
+                break;
+            }
+            inputs = items(result);
+        }
+        return result;
+    }
+
+    private static JsonNode evaluateStep(
+            final Node step, final List<JsonNode> inputs, final Map<String, JsonNode> bindings, final boolean lastStep) {
+        final List<JsonNode> results = new ArrayList<>(inputs.size());
+        for (JsonNode item : inputs) {
+            Deadline.check();
+            final JsonNode result = evaluate(step, item, bindings);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+
+        if (lastStep && results.size() == 1 && results.get(0).isArray() && !(results.get(0) instanceof Sequence)) {
+            return results.get(0);
+        }
+        final Sequence sequence = new Sequence();
+        for (JsonNode result : results) {
+            if (result.isArray()) {
+                sequence.addAll(items(result));
+            } else {
+                sequence.add(result);
+            }
+        }
+        return sequence;
+    }
+
+    static JsonNode evaluateName(final String name, final JsonNode input) {
+        if (input == null) {
+            return null;
+        }
+        if (input.isArray()) {
+            final Sequence sequence = new Sequence();
+            for (JsonNode item : input) {
+                Deadline.check();
+                final JsonNode result = evaluateName(name, item);
+                if (result != null) {
+                    sequence.add(result);
+                }
+            }
+            return sequence;
+        }
+        return input.isObject() ? input.get(name) : null;
+    }
+
+    private static JsonNode applyPredicates(
+            final List<Node> predicates, final JsonNode input, final Map<String, JsonNode> bindings) {
+        if (input == null) {
+            return null;
+        }
+        JsonNode results = input;
+        for (Node predicate : predicates) {
+            final List<JsonNode> inputs = results.isArray() ? items(results) : Collections.singletonList(results);
+            if (predicate instanceof Node.Literal && predicate.predicates.isEmpty()
+                    && ((Node.Literal) predicate).value.isNumber()) {
+                final int index = index(((Node.Literal) predicate).value.doubleValue(), inputs.size());
+                results = index >= 0 && index < inputs.size() ? inputs.get(index) : null;
+            } else {
+                results = filter(predicate, inputs, bindings);
+            }
+            if (results == null) {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private static Sequence filter(final Node predicate, final List<JsonNode> inputs, final Map<String, JsonNode> bindings) {
+        final Sequence results = new Sequence();
+        for (int index = 0; index < inputs.size(); index++) {
+            Deadline.check();
+            final JsonNode item = inputs.get(index);
+            final JsonNode result = evaluate(predicate, item, bindings);
+            if (Values.isNumeric(result)) {
+                if (index(result.doubleValue(), inputs.size()) == index) {
+                    results.add(item);
+                }
+            } else if (isArrayOfNumbers(result)) {
+                for (JsonNode number : result) {
+                    if (index(number.doubleValue(), inputs.size()) == index) {
+                        results.add(item);
+                    }
+                }
+            } else if (Values.isTruthy(Values.toBoolean(result))) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    private static JsonNode evaluateBinary(final Node.Binary node, final JsonNode input, final Map<String, JsonNode> bindings) {
+        final JsonNode lhs = evaluate(node.lhs, input, bindings);
+        final JsonNode rhs = evaluate(node.rhs, input, bindings);
+
+        switch (node.operator) {
+            case "+":
+            case "-":
+            case "*":
+            case "/":
+            case "%":
+                return arithmetic(node.operator, lhs, rhs);
+            case "=":
+            case "!=":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return BooleanNode.valueOf(compare(node.operator, lhs, rhs));
+            case "&":
+                return TextNode.valueOf((lhs == null ? "" : Values.toText(lhs)) + (rhs == null ? "" : Values.toText(rhs)));
+            case "and":
+                final Boolean left = Values.toBoolean(lhs);
+                return bool(Values.isTruthy(left) ? Values.toBoolean(rhs) : left);
+            case "or":
+                return bool(Values.isTruthy(Values.toBoolean(lhs)) ? Boolean.TRUE : Values.toBoolean(rhs));
+            default:
+                return BooleanNode.valueOf(includes(lhs, rhs));
+        }
+    }
+
+    static JsonNode arithmetic(final String operator, final JsonNode lhs, final JsonNode rhs) {
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+        if (!Values.isNumeric(lhs)) {
+            throw new JsonataException("T2001: the left side of the " + operator + " operator must evaluate to a number");
+        }
+        if (!Values.isNumeric(rhs)) {
+            throw new JsonataException("T2002: the right side of the " + operator + " operator must evaluate to a number");
+        }
+        final double left = lhs.doubleValue();
+        final double right = rhs.doubleValue();
+        switch (operator) {
+            case "+":
+                return Values.number(left + right);
+            case "-":
+                return Values.number(left - right);
+            case "*":
+                return Values.number(left * right);
+            case "/":
+                return Values.number(left / right);
+            default:
+                return Values.number(left % right);
+        }
+    }
+
+    static boolean compare(final String operator, final JsonNode lhs, final JsonNode rhs) {
+        if (lhs == null || rhs == null) {
+            return false;
+        }
+        switch (operator) {
+            case "=":
+                return Values.strictEquals(lhs, rhs);
+            case "!=":
+                return !Values.strictEquals(lhs, rhs);
+            default:
+                break;
+        }
+
+        if (!(lhs.isTextual() || lhs.isNumber()) || !(rhs.isTextual() || rhs.isNumber())) {
+            throw new JsonataException("T2010: the expressions either side of operator " + operator
+                    + " must evaluate to numeric or string values");
+        }
+        if (lhs.isTextual() != rhs.isTextual()) {
+            throw new JsonataException("T2009: the values either side of operator " + operator
+                    + " must be of the same data type");
+        }
+        if (lhs.isNumber() && (Double.isNaN(lhs.doubleValue()) || Double.isNaN(rhs.doubleValue()))) {
+            return false;
+        }
+        final int comparison = lhs.isTextual()
+                ? lhs.textValue().compareTo(rhs.textValue())
+                : Double.compare(lhs.doubleValue(), rhs.doubleValue());
+        switch (operator) {
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            case ">":
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+        }
+    }
+
+    static boolean includes(final JsonNode lhs, final JsonNode rhs) {
+        if (lhs == null || rhs == null) {
+            return false;
+        }
+        for (JsonNode item : rhs.isArray() ? items(rhs) : Collections.singletonList(rhs)) {
+            if (Values.strictEquals(item, lhs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static JsonNode negate(final JsonNode value) {
+        if (value == null) {
+            return null;
+        }
+        if (!Values.isNumeric(value)) {
+            throw new JsonataException("D1002: cannot negate a non-numeric value");
+        }
+        return Values.number(-value.doubleValue());
+    }
+
+    private static JsonNode evaluateCondition(
+            final Node.Condition node, final JsonNode input, final Map<String, JsonNode> bindings) {
+        if (Values.isTruthy(Values.toBoolean(evaluate(node.condition, input, bindings)))) {
+            return evaluate(node.then, input, bindings);
+        }
+        return node.otherwise == null ? null : evaluate(node.otherwise, input, bindings);
+    }
+
+    private static JsonNode evaluateCall(final Node.Call node, final JsonNode input, final Map<String, JsonNode> bindings) {
+        final List<JsonNode> arguments = new ArrayList<>(node.arguments.size());
+        for (Node argument : node.arguments) {
+            arguments.add(evaluate(argument, input, bindings));
+        }
+        return node.function.apply(arguments);
+    }
+
+    static JsonNode bool(final Boolean value) {
+        return value == null ? null : BooleanNode.valueOf(value);
+    }
+
+    static List<JsonNode> items(final JsonNode array) {
+        final List<JsonNode> items = new ArrayList<>(array.size());
+        array.forEach(items::add);
+        return items;
+    }
+
+    /**
+     * The index a number selects, counted from the end when negative.
+     */
+    static int index(final double number, final int size) {
+        final int index = (int) Math.floor(number);
+        return index < 0 ? size + index : index;
+    }
+
+    static boolean isArrayOfNumbers(final JsonNode value) {
+        if (value == null || !value.isArray()) {
+            return false;
+        }
+        for (JsonNode item : value) {
+            if (!item.isNumber()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
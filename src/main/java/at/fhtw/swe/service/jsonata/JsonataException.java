@@ -0,0 +1,12 @@
+package at.fhtw.swe.service.jsonata;
+
+/**
+ * An expression the native evaluator cannot parse, or an error raised while evaluating it. The messages carry the
+ * error codes of the jsonata reference implementation where there is one.
+ */
+public class JsonataException extends RuntimeException {
+
+    public JsonataException(final String message) {
+        super(message);
+    }
+}
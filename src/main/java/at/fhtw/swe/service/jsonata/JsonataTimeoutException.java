@@ -0,0 +1,13 @@
+package at.fhtw.swe.service.jsonata;
+
+/**
+ * Thrown when an evaluation runs out of its time budget.
+ */
+public class JsonataTimeoutException extends JsonataException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonataTimeoutException(final String message) {
+        super(message);
+    }
+}
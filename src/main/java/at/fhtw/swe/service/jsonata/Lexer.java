@@ -0,0 +1,175 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits an expression into tokens the same way the jsonata 1.5 tokenizer does. A {@code /} is a division in infix
+ * position and the start of a regex otherwise, so the parser tells the lexer which position it is in.
+ */
+final class Lexer {
+
+    enum Type {
+        NAME, VARIABLE, STRING, NUMBER, VALUE, OPERATOR, END
+    }
+
+    static final class Token {
+        final Type type;
+        final String text;
+        final JsonNode value;
+        final int position;
+
+        private Token(final Type type, final String text, final JsonNode value, final int position) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.position = position;
+        }
+
+        boolean is(final String operator) {
+            return type == Type.OPERATOR && text.equals(operator);
+        }
+    }
+
+    private static final String OPERATOR_CHARACTERS = ".[]{}(),@#;:?+-*/%|=<>^&!~";
+    private static final String WHITESPACE = " \t\n\r\u000B";
+    private static final String[] DOUBLE_OPERATORS = {"..", ":=", "!=", ">=", "<=", "**", "~>"};
+    private static final Pattern NUMBER = Pattern.compile("-?(0|([1-9][0-9]*))(\\.[0-9]+)?([Ee][-+]?[0-9]+)?");
+
+    private final String expression;
+    private final Matcher number;
+    private int position;
+
+    Lexer(final String expression) {
+        this.expression = expression;
+        this.number = NUMBER.matcher(expression);
+    }
+
+    Token next(final boolean infix) {
+        while (position < expression.length() && WHITESPACE.indexOf(expression.charAt(position)) >= 0) {
+            position++;
+        }
+        if (position >= expression.length()) {
+            return new Token(Type.END, "(end)", null, position);
+        }
+
+        final int start = position;
+        final char current = expression.charAt(position);
+
+        if (!infix && current == '/') {
+            throw new JsonataException("Regular expressions are not supported, at " + start);
+        }
+        for (String operator : DOUBLE_OPERATORS) {
+            if (expression.startsWith(operator, position)) {
+                position += 2;
+                return new Token(Type.OPERATOR, operator, null, start);
+            }
+        }
+        if (OPERATOR_CHARACTERS.indexOf(current) >= 0) {
+            position++;
+            return new Token(Type.OPERATOR, String.valueOf(current), null, start);
+        }
+        if (current == '"' || current == '\'') {
+            return new Token(Type.STRING, null, TextNode.valueOf(readString(current)), start);
+        }
+
+        number.region(position, expression.length());
+        if (number.lookingAt()) {
+            position = number.end();
+            final double value = Double.parseDouble(number.group());
+            if (Double.isInfinite(value)) {
+                throw new JsonataException("S0102: number out of range at " + start);
+            }
+            return new Token(Type.NUMBER, number.group(), DoubleNode.valueOf(value), start);
+        }
+
+        if (current == '`') {
+            final int end = expression.indexOf('`', position + 1);
+            if (end < 0) {
+                throw new JsonataException("S0105: quoted property name must be terminated with a backquote");
+            }
+            position = end + 1;
+            return new Token(Type.NAME, expression.substring(start + 1, end), null, start);
+        }
+
+        while (position < expression.length()
+                && WHITESPACE.indexOf(expression.charAt(position)) < 0
+                && OPERATOR_CHARACTERS.indexOf(expression.charAt(position)) < 0) {
+            position++;
+        }
+        if (current == '$') {
+            return new Token(Type.VARIABLE, expression.substring(start + 1, position), null, start);
+        }
+
+        final String name = expression.substring(start, position);
+        switch (name) {
+            case "and":
+            case "or":
+            case "in":
+                return new Token(Type.OPERATOR, name, null, start);
+            case "true":
+                return new Token(Type.VALUE, name, BooleanNode.TRUE, start);
+            case "false":
+                return new Token(Type.VALUE, name, BooleanNode.FALSE, start);
+            case "null":
+                return new Token(Type.VALUE, name, NullNode.getInstance(), start);
+            default:
+                return new Token(Type.NAME, name, null, start);
+        }
+    }
+
+    private String readString(final char quote) {
+        final StringBuilder text = new StringBuilder();
+        position++;
+        while (position < expression.length()) {
+            final char current = expression.charAt(position);
+            if (current == quote) {
+                position++;
+                return text.toString();
+            }
+            if (current == '\\') {
+                position++;
+                text.append(readEscape());
+            } else {
+                text.append(current);
+            }
+            position++;
+        }
+        throw new JsonataException("S0101: string literal must be terminated by a matching quote");
+    }
+
+    private char readEscape() {
+        final char escaped = position < expression.length() ? expression.charAt(position) : 0;
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                final String hex = expression.substring(position + 1, Math.min(position + 5, expression.length()));
+                if (!hex.matches("[0-9a-fA-F]{4}")) {
+                    throw new JsonataException("S0104: the escape sequence \\u must be followed by 4 hex digits");
+                }
+                position += 4;
+                return (char) Integer.parseInt(hex, 16);
+            default:
+                throw new JsonataException("S0103: unsupported escape sequence \\" + escaped);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Syntax tree of an expression, shaped like the optimized tree of the jsonata 1.5 parser: names are paths of one
+ * step, and predicates belong to the step they filter.
+ */
+abstract class Node {
+    final List<Node> predicates = new ArrayList<>(0);
+
+    static final class Path extends Node {
+        final List<Node> steps;
+
+        Path(final List<Node> steps) {
+            this.steps = steps;
+        }
+    }
+
+    static final class Name extends Node {
+        final String name;
+
+        Name(final String name) {
+            this.name = name;
+        }
+    }
+
+    static final class Literal extends Node {
+        final JsonNode value;
+
+        Literal(final JsonNode value) {
+            this.value = value;
+        }
+    }
+
+    static final class Variable extends Node {
+        final String name;
+
+        Variable(final String name) {
+            this.name = name;
+        }
+    }
+
+    static final class Binary extends Node {
+        final String operator;
+        final Node lhs;
+        final Node rhs;
+
+        Binary(final String operator, final Node lhs, final Node rhs) {
+            this.operator = operator;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+    }
+
+    static final class Negation extends Node {
+        final Node expression;
+
+        Negation(final Node expression) {
+            this.expression = expression;
+        }
+    }
+
+    static final class Condition extends Node {
+        final Node condition;
+        final Node then;
+        final Node otherwise;
+
+        Condition(final Node condition, final Node then, final Node otherwise) {
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+    }
+
+    static final class Block extends Node {
+        final Node expression;
+
+        Block(final Node expression) {
+            this.expression = expression;
+        }
+    }
+
+    static final class Call extends Node {
+        final Functions.BuiltIn function;
+        final List<Node> arguments;
+
+        Call(final Functions.BuiltIn function, final List<Node> arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.node.DoubleNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top down operator precedence parser with the binding powers of the jsonata 1.5 parser. Constructs outside of the
+ * supported subset (lambdas, regexes, constructors, wildcards, bindings, ...) are rejected with a
+ * {@link JsonataException}, so callers can fall back to the script engine.
+ */
+final class Parser {
+
+    private static final Map<String, Integer> BINDING_POWERS = new HashMap<>();
+
+    static {
+        BINDING_POWERS.put(".", 75);
+        BINDING_POWERS.put("[", 80);
+        BINDING_POWERS.put("(", 80);
+        BINDING_POWERS.put("{", 70);
+        BINDING_POWERS.put("*", 60);
+        BINDING_POWERS.put("/", 60);
+        BINDING_POWERS.put("%", 60);
+        BINDING_POWERS.put("+", 50);
+        BINDING_POWERS.put("-", 50);
+        BINDING_POWERS.put("&", 50);
+        BINDING_POWERS.put("=", 40);
+        BINDING_POWERS.put("!=", 40);
+        BINDING_POWERS.put("<", 40);
+        BINDING_POWERS.put("<=", 40);
+        BINDING_POWERS.put(">", 40);
+        BINDING_POWERS.put(">=", 40);
+        BINDING_POWERS.put("in", 40);
+        BINDING_POWERS.put("^", 40);
+        BINDING_POWERS.put("~>", 40);
+        BINDING_POWERS.put("and", 30);
+        BINDING_POWERS.put("or", 25);
+        BINDING_POWERS.put("?", 20);
+        BINDING_POWERS.put(":=", 10);
+    }
+
+    private final Lexer lexer;
+    private Lexer.Token current;
+
+    private Parser(final String expression) {
+        this.lexer = new Lexer(expression);
+    }
+
+    static Node parse(final String expression) {
+        final Parser parser = new Parser(expression);
+        parser.current = parser.lexer.next(false);
+        final Node root = parser.expression(0);
+        if (parser.current.type != Lexer.Type.END) {
+            throw new JsonataException("S0201: syntax error at " + parser.current.position);
+        }
+        return root;
+    }
+
+    private Node expression(final int rightBindingPower) {
+        Lexer.Token token = current;
+        advance(true);
+        Node left = prefix(token);
+        while (rightBindingPower < bindingPower(current)) {
+            token = current;
+            advance(false);
+            left = infix(token, left);
+        }
+        return left;
+    }
+
+    private Node prefix(final Lexer.Token token) {
+        switch (token.type) {
+            case NAME:
+                if ((token.text.equals("function") || token.text.equals("λ")) && current.is("(")) {
+                    throw unsupported("lambda functions", token);
+                }
+                return path(new Node.Name(token.text));
+            case VARIABLE:
+                return new Node.Variable(token.text);
+            case STRING:
+            case NUMBER:
+            case VALUE:
+                return new Node.Literal(token.value);
+            case OPERATOR:
+                if (token.is("-")) {
+                    return negation(expression(70));
+                }
+                if (token.is("(")) {
+                    return block(token);
+                }
+                throw unsupported("'" + token.text + "'", token);
+            default:
+                throw new JsonataException("S0207: unexpected end of expression");
+        }
+    }
+
+    private Node infix(final Lexer.Token token, final Node left) {
+        switch (token.text) {
+            case ".":
+                return path(left, expression(75));
+            case "[":
+                return predicate(token, left);
+            case "(":
+                return call(token, left);
+            case "?":
+                final Node then = expression(0);
+                Node otherwise = null;
+                if (current.is(":")) {
+                    advance(false);
+                    otherwise = expression(0);
+                }
+                return new Node.Condition(left, then, otherwise);
+            case "+":
+            case "-":
+            case "*":
+            case "/":
+            case "%":
+            case "&":
+            case "=":
+            case "!=":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "in":
+            case "and":
+            case "or":
+                return new Node.Binary(token.text, left, expression(BINDING_POWERS.get(token.text)));
+            default:
+                throw unsupported("'" + token.text + "'", token);
+        }
+    }
+
+    private static Node negation(final Node expression) {
+        if (expression instanceof Node.Literal && expression.predicates.isEmpty()
+                && ((Node.Literal) expression).value.isNumber()) {
+            return new Node.Literal(DoubleNode.valueOf(-((Node.Literal) expression).value.doubleValue()));
+        }
+        return new Node.Negation(expression);
+    }
+
+    private Node block(final Lexer.Token token) {
+        if (current.is(")")) {
+            throw unsupported("empty blocks", token);
+        }
+        final Node expression = expression(0);
+        if (current.is(";")) {
+            throw unsupported("blocks of several expressions", token);
+        }
+        expect(")");
+        return new Node.Block(expression);
+    }
+
+    private Node predicate(final Lexer.Token token, final Node left) {
+        if (current.is("]")) {
+            throw unsupported("empty predicates", token);
+        }
+        final Node predicate = expression(0);
+        expect("]");
+        final Node step = left instanceof Node.Path
+                ? ((Node.Path) left).steps.get(((Node.Path) left).steps.size() - 1)
+                : left;
+        step.predicates.add(predicate);
+        return left;
+    }
+
+    private Node call(final Lexer.Token token, final Node left) {
+        if (!(left instanceof Node.Variable) || !left.predicates.isEmpty()) {
+            throw unsupported("calls of computed functions", token);
+        }
+        final List<Node> arguments = new ArrayList<>();
+        if (!current.is(")")) {
+            while (true) {
+                if (current.is("?")) {
+                    throw unsupported("partial function application", token);
+                }
+                arguments.add(expression(0));
+                if (!current.is(",")) {
+                    break;
+                }
+                advance(false);
+            }
+        }
+        expect(")");
+
+        final String name = ((Node.Variable) left).name;
+        final Functions.BuiltIn function = Functions.get(name);
+        if (function == null || function.arity != arguments.size()) {
+            throw unsupported("$" + name + " with " + arguments.size() + " arguments", token);
+        }
+        return new Node.Call(function, arguments);
+    }
+
+    private static Node path(final Node step) {
+        return new Node.Path(new ArrayList<>(Collections.singletonList(step)));
+    }
+
+    private static Node path(final Node left, final Node right) {
+        final List<Node> steps = new ArrayList<>();
+        addSteps(steps, left);
+        addSteps(steps, right);
+        for (int index = 0; index < steps.size(); index++) {
+            final Node step = steps.get(index);
+            if (step instanceof Node.Literal) {
+                final Node.Literal literal = (Node.Literal) step;
+                if (!literal.value.isTextual()) {
+                    throw new JsonataException("S0213: the literal value " + literal.value
+                            + " cannot be used as a step within a path expression");
+                }
+                final Node.Name name = new Node.Name(literal.value.textValue());
+                name.predicates.addAll(literal.predicates);
+                steps.set(index, name);
+            }
+        }
+        return new Node.Path(steps);
+    }
+
+    private static void addSteps(final List<Node> steps, final Node node) {
+        if (node instanceof Node.Path) {
+            steps.addAll(((Node.Path) node).steps);
+        } else {
+            steps.add(node);
+        }
+    }
+
+    private void advance(final boolean infix) {
+        current = lexer.next(infix);
+    }
+
+    private void expect(final String operator) {
+        if (!current.is(operator)) {
+            throw new JsonataException("S0202: expected '" + operator + "' at " + current.position);
+        }
+        advance(true);
+    }
+
+    private static int bindingPower(final Lexer.Token token) {
+        if (token.type != Lexer.Type.OPERATOR) {
+            return 0;
+        }
+        return BINDING_POWERS.getOrDefault(token.text, 0);
+    }
+
+    private static JsonataException unsupported(final String construct, final Lexer.Token token) {
+        return new JsonataException(
+                "Not supported by the native engine: " + construct + " at " + token.position);
+    }
+}
@@ -0,0 +1,34 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+/**
+ * The result of a path or a filter. Unlike an array of the data, a sequence is flattened into the enclosing result
+ * and collapses to its only item, or to nothing, once the expression producing it is evaluated.
+ */
+// ArrayNode overrides the generic JsonNode.deepCopy() with a raw return type, which javac flags in every subclass
+@SuppressWarnings("unchecked")
+final class Sequence extends ArrayNode {
+
+    private static final long serialVersionUID = 1L;
+
+    Sequence() {
+        super(JsonNodeFactory.instance);
+    }
+
+    /**
+     * @return nothing for an empty sequence, the item of a singleton, the sequence itself otherwise
+     */
+    JsonNode value() {
+        switch (size()) {
+            case 0:
+                return null;
+            case 1:
+                return get(0);
+            default:
+                return this;
+        }
+    }
+}
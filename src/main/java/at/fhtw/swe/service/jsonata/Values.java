@@ -0,0 +1,166 @@
+package at.fhtw.swe.service.jsonata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The value semantics of javascript that jsonata builds on: truthiness, strict equality and the formatting of
+ * numbers. A {@code null} reference is javascript's {@code undefined}, the JSON null is a {@code NullNode}.
+ */
+final class Values {
+
+    private Values() {
+    }
+
+    /**
+     * jsonata's {@code $boolean}: {@code null} for undefined, the effective boolean value otherwise.
+     */
+    static Boolean toBoolean(final JsonNode value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.isArray()) {
+            if (value.size() == 1) {
+                return toBoolean(value.get(0));
+            }
+            for (JsonNode item : value) {
+                if (Boolean.TRUE.equals(toBoolean(item))) {
+                    return Boolean.TRUE;
+                }
+            }
+            return Boolean.FALSE;
+        }
+        if (value.isTextual()) {
+            return !value.textValue().isEmpty();
+        }
+        if (value.isNumber()) {
+            return isNumeric(value) && value.doubleValue() != 0;
+        }
+        if (value.isObject()) {
+            return value.size() > 0;
+        }
+        return value.isBoolean() && value.booleanValue();
+    }
+
+    static boolean isTruthy(final Boolean value) {
+        return Boolean.TRUE.equals(value);
+    }
+
+    static boolean isNumeric(final JsonNode value) {
+        return value != null && value.isNumber() && !Double.isNaN(value.doubleValue());
+    }
+
+    static JsonNode number(final double value) {
+        return DoubleNode.valueOf(value);
+    }
+
+    /**
+     * javascript's {@code ===}: values of the same type are compared by value, objects and arrays by identity.
+     */
+    static boolean strictEquals(final JsonNode lhs, final JsonNode rhs) {
+        if (lhs.isNumber() && rhs.isNumber()) {
+            return lhs.doubleValue() == rhs.doubleValue();
+        }
+        if (lhs.isTextual() && rhs.isTextual()) {
+            return lhs.textValue().equals(rhs.textValue());
+        }
+        if (lhs.isBoolean() && rhs.isBoolean()) {
+            return lhs.booleanValue() == rhs.booleanValue();
+        }
+        if (lhs.isNull() && rhs.isNull()) {
+            return true;
+        }
+        return lhs == rhs;
+    }
+
+    /**
+     * jsonata's {@code $string}: strings unchanged, anything else as JSON with numbers rounded to 15 digits.
+     */
+    static String toText(final JsonNode value) {
+        if (value.isTextual()) {
+            return value.textValue();
+        }
+        if (value.isNumber() && !isFinite(value.doubleValue())) {
+            throw new JsonataException("D3001: attempting to invoke string function on Infinity or NaN");
+        }
+        final StringBuilder text = new StringBuilder();
+        appendJson(text, value, true);
+        return text.toString();
+    }
+
+    /**
+     * javascript's {@code JSON.stringify}, {@code null} for undefined.
+     */
+    static String stringify(final JsonNode value) {
+        if (value == null) {
+            return null;
+        }
+        final StringBuilder text = new StringBuilder();
+        appendJson(text, value, false);
+        return text.toString();
+    }
+
+    static String formatNumber(final double number) {
+        if (number == 0) {
+            return "0";
+        }
+        final double magnitude = Math.abs(number);
+        final BigDecimal decimal = new BigDecimal(Double.toString(number)).stripTrailingZeros();
+        if (magnitude >= 1e-6 && magnitude < 1e21) {
+            return decimal.toPlainString();
+        }
+        final String digits = decimal.unscaledValue().abs().toString();
+        final int exponent = digits.length() - 1 - decimal.scale();
+        return (number < 0 ? "-" : "")
+                + digits.charAt(0)
+                + (digits.length() > 1 ? "." + digits.substring(1) : "")
+                + "e" + (exponent >= 0 ? "+" : "-") + Math.abs(exponent);
+    }
+
+    private static boolean isFinite(final double number) {
+        return !Double.isNaN(number) && !Double.isInfinite(number);
+    }
+
+    private static void appendJson(final StringBuilder text, final JsonNode value, final boolean roundNumbers) {
+        if (value.isNumber()) {
+            double number = value.doubleValue();
+            if (!isFinite(number)) {
+                text.append("null");
+                return;
+            }
+            if (roundNumbers) {
+                number = new BigDecimal(number).round(new MathContext(15)).doubleValue();
+            }
+            text.append(formatNumber(number));
+        } else if (value.isArray()) {
+            text.append('[');
+            for (int index = 0; index < value.size(); index++) {
+                if (index > 0) {
+                    text.append(',');
+                }
+                appendJson(text, value.get(index), roundNumbers);
+            }
+            text.append(']');
+        } else if (value.isObject()) {
+            text.append('{');
+            final Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                text.append(TextNode.valueOf(field.getKey()).toString()).append(':');
+                appendJson(text, field.getValue(), roundNumbers);
+                if (fields.hasNext()) {
+                    text.append(',');
+                }
+            }
+            text.append('}');
+        } else {
+            text.append(value.toString());
+        }
+    }
+}
@@ -1,26 +1,94 @@
 package at.fhtw.swe;
 
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ErrorGroup;
 import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.service.AdmissionControl;
+import at.fhtw.swe.service.AdmissionRejectedException;
+import at.fhtw.swe.service.JsonataEngine;
+import at.fhtw.swe.service.StreamingValidator;
+import at.fhtw.swe.service.TemplateCache;
+import at.fhtw.swe.service.ValidationMetrics;
+import at.fhtw.swe.service.Validator;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.http.HttpServletRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
+@AutoConfigureMockMvc
 public class SweApplicationTests {
 
+    private static final String[][] FIXTURES = {
+            {"/forms/completeForm.json", "/forms/completeData.json"},
+            {"/forms/gridForm.json", "/forms/gridData.json"},
+            {"/forms/internalValidationForm.json", "/forms/internalValidationData.json"}
+    };
+
     @Autowired
     private transient ValidationController sut;
 
+    @Autowired
+    private transient Validator validator;
+
+    @Autowired
+    private transient StreamingValidator streamingValidator;
+
+    @Autowired
+    private transient TemplateCache templateCache;
+
+    @Autowired
+    private transient JsonataEngine jsonataEngine;
+
+    @Autowired
+    private transient MockMvc mockMvc;
+
+    @Autowired
+    private transient AdmissionControl admissionControl;
+
     @Test
     public void basicComponents() {
         final ValidationRequestBody body = new ValidationRequestBody();
@@ -30,11 +98,11 @@ public class SweApplicationTests {
         final ResponseEntity<Set<ValidationError>> responseEntity = sut.postExternalValidation(body);
 
         assertThat(responseEntity.getBody()).containsExactlyInAnyOrder(
-                new ValidationError().key("firstName").violation("minLength"),
-                new ValidationError().key("lastName").violation("maxLength"),
-                new ValidationError().key("email").violation("pattern"),
-                new ValidationError().key("birthdate").violation("minDate"),
-                new ValidationError().key("birthdate").violation("jsonata"),
+                new ValidationError().key("firstName").violation("minLength").path("/firstName"),
+                new ValidationError().key("lastName").violation("maxLength").path("/lastName"),
+                new ValidationError().key("email").violation("pattern").path("/email"),
+                new ValidationError().key("birthdate").violation("minDate").path("/birthdate"),
+                new ValidationError().key("birthdate").violation("jsonata").path("/birthdate"),
                 new ValidationError().key("number").violation("required")
         );
     }
@@ -48,11 +116,42 @@ public class SweApplicationTests {
         final ResponseEntity<Set<ValidationError>> responseEntity = sut.postExternalValidation(body);
 
         assertThat(responseEntity.getBody()).containsExactlyInAnyOrder(
-                new ValidationError().key("weitereBeteiligtePersonen").violation("minLength"),
-                new ValidationError().key("nachname").violation("jsonata")
+                new ValidationError().key("weitereBeteiligtePersonen").violation("minLength")
+                        .path("/weitereBeteiligtePersonen"),
+                new ValidationError().key("nachname").violation("jsonata").row(0).path("/beteiligtePersonen/0/nachname")
         );
     }
 
+    @Test
+    public void gridRowsAreReportedSeparatelyAndGrouped() {
+        final ValidationRequestBody body = new ValidationRequestBody();
+        body.setTemplate(getTestFileAsString("/forms/gridForm.json"));
+        body.setData("{\"beteiligtePersonen\": [{\"vorname\": \"Max\", \"nachname\": \"Mustermann\"},"
+                + "{\"vorname\": \"Erika\", \"nachname\": \"Musterfrau\"}, {\"vorname\": \"Kein nachname\"},"
+                + "{\"vorname\": \"Moritz\", \"nachname\": \"Muster\"}], \"weitereBeteiligtePersonen\": []}");
+
+        final Set<ValidationError> errors = sut.postExternalValidation(body).getBody();
+        final List<ErrorGroup> groups = sut.postGroupedExternalValidation(body).getBody();
+
+        assertThat(errors).containsExactlyInAnyOrder(
+                new ValidationError().key("nachname").violation("jsonata").row(0).path("/beteiligtePersonen/0/nachname"),
+                new ValidationError().key("nachname").violation("jsonata").row(1).path("/beteiligtePersonen/1/nachname"),
+                new ValidationError().key("nachname").violation("jsonata").row(3).path("/beteiligtePersonen/3/nachname"),
+                new ValidationError().key("weitereBeteiligtePersonen").violation("minLength")
+                        .path("/weitereBeteiligtePersonen")
+        );
+        assertThat(groups).hasSize(2);
+        final ErrorGroup nachname = groups.stream()
+                .filter(group -> "nachname".equals(group.getKey())).findFirst().get();
+        assertThat(nachname.getCount()).isEqualTo(3);
+        assertThat(BitSet.valueOf(Base64.getDecoder().decode(nachname.getRows())))
+                .isEqualTo(BitSet.valueOf(new long[]{0b1011}));
+        final ErrorGroup minLength = groups.stream()
+                .filter(group -> "weitereBeteiligtePersonen".equals(group.getKey())).findFirst().get();
+        assertThat(minLength.getCount()).isEqualTo(1);
+        assertThat(minLength.getRows()).isNull();
+    }
+
     @Test
     public void internalAndExternal() {
         final ValidationRequestBody body = new ValidationRequestBody();
@@ -63,16 +162,348 @@ public class SweApplicationTests {
         final ResponseEntity<Set<ValidationError>> externalErrors = sut.postExternalValidation(body);
 
         final ValidationError[] validationErrors = {
-                new ValidationError().key("email").violation("minLength"),
-                new ValidationError().key("email").violation("pattern"),
-                new ValidationError().key("birthdate").violation("jsonata"),
-                new ValidationError().key("birthdate").violation("minDate")
+                new ValidationError().key("email").violation("minLength").path("/email"),
+                new ValidationError().key("email").violation("pattern").path("/email"),
+                new ValidationError().key("birthdate").violation("jsonata").path("/birthdate"),
+                new ValidationError().key("birthdate").violation("minDate").path("/birthdate")
         };
 
         assertThat(externalErrors.getBody()).containsExactlyInAnyOrder(validationErrors);
         assertThat(internalErrors.getBody()).containsExactlyInAnyOrder(validationErrors);
     }
 
+    @Test
+    public void concurrentRequestsDoNotInterfere() throws Exception {
+        final ValidationRequestBody gridBody = new ValidationRequestBody();
+        gridBody.setTemplate(getTestFileAsString("/forms/gridForm.json"));
+        gridBody.setData(getTestFileAsString("/forms/gridData.json"));
+        final ValidationRequestBody internalBody = new ValidationRequestBody();
+        internalBody.setTemplate(getTestFileAsString("/forms/internalValidationForm.json"));
+        internalBody.setData("{\"email\": \"max@example.com\", \"birthdate\": \"2999-10-03T22:36:15.359Z\"}");
+
+        final Set<ValidationError> gridErrors = sut.postExternalValidation(gridBody).getBody();
+        final Set<ValidationError> internalErrors = sut.postInternalValidation(internalBody).getBody();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final boolean grid = i % 2 == 0;
+                results.add(executor.submit(() -> grid
+                        ? gridErrors.equals(sut.postExternalValidation(gridBody).getBody())
+                        : internalErrors.equals(sut.postInternalValidation(internalBody).getBody())));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(internalErrors).isEmpty();
+    }
+
+    @Test
+    public void asyncMatchesBlocking() throws Exception {
+        for (String[] testCase : FIXTURES) {
+            final ValidationRequestBody body = new ValidationRequestBody();
+            body.setTemplate(getTestFileAsString(testCase[0]));
+            body.setData(getTestFileAsString(testCase[1]));
+
+            assertThat(sut.postAsyncInternalValidation(body).get().getBody())
+                    .isEqualTo(sut.postInternalValidation(body).getBody());
+            assertThat(sut.postAsyncExternalValidation(body).get().getBody())
+                    .isEqualTo(sut.postExternalValidation(body).getBody());
+        }
+        assertThat(admissionControl.getStatistics().getAvailable())
+                .isEqualTo(admissionControl.getStatistics().getPermits());
+    }
+
+    @Test
+    public void streamingMatchesTree() {
+        for (String[] testCase : FIXTURES) {
+            final CompiledForm form = templateCache.get(getTestFileAsString(testCase[0]));
+            final String data = getTestFileAsString(testCase[1]);
+
+            for (boolean internal : new boolean[]{true, false}) {
+                assertThat(streamingValidator.validateForm(form, new StringReader(data), internal))
+                        .isEqualTo(validator.validateForm(form, data, internal));
+            }
+        }
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        final Validator parallelValidator = new Validator(jsonataEngine, templateCache, ValidationMetrics.disabled(), true, 4, 1, 1, 0);
+        try {
+            for (String[] testCase : FIXTURES) {
+                final CompiledForm form = templateCache.get(getTestFileAsString(testCase[0]));
+                final String data = getTestFileAsString(testCase[1]);
+
+                for (boolean internal : new boolean[]{true, false}) {
+                    assertThat(parallelValidator.validateForm(form, data, internal))
+                            .containsExactlyElementsOf(validator.validateForm(form, data, internal));
+                }
+            }
+        } finally {
+            parallelValidator.shutdown();
+        }
+    }
+
+    @Test
+    public void batch() throws Exception {
+        final String input = String.join("\n",
+                getTestFileAsString("/forms/gridForm.json").replaceAll("\\s*\n\\s*", ""),
+                getTestFileAsString("/forms/gridData.json").replaceAll("\\s*\n\\s*", ""),
+                "",
+                "{\"weitereBeteiligtePersonen\": [{\"vorname\": \"Erika\"}]}",
+                "{ no json");
+
+        final ResponseEntity<StreamingResponseBody> responseEntity = sut.postExternalBatchValidation(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        responseEntity.getBody().writeTo(output);
+
+        final String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("index").asInt()).isEqualTo(0);
+        assertThat(first.get("errors")).hasSize(2);
+        final JsonNode second = objectMapper.readTree(lines[1]);
+        assertThat(second.get("index").asInt()).isEqualTo(1);
+        assertThat(second.get("errors")).isEmpty();
+        final JsonNode third = objectMapper.readTree(lines[2]);
+        assertThat(third.get("index").asInt()).isEqualTo(2);
+        assertThat(third.has("failure")).isTrue();
+    }
+
+    @Test
+    public void oversizedBodiesAreRejectedBeforeTheyAreRead() throws Exception {
+        final RequestSizeFilter filter = new RequestSizeFilter(new AdmissionControl(1, 1, 0, 10, 10), 16);
+
+        final MockHttpServletRequest sized = new MockHttpServletRequest("POST", "/external");
+        sized.setContent(new byte[32]);
+        final MockHttpServletResponse rejected = new MockHttpServletResponse();
+        final MockFilterChain untouched = new MockFilterChain();
+        filter.doFilter(sized, rejected, untouched);
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE.value());
+        assertThat(untouched.getRequest()).isNull();
+
+        final MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/external") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent(new byte[32]);
+        final FilterChain reading = (request, response) ->
+                ((HttpServletRequest) request).getInputStream().read(new byte[32]);
+        assertThatThrownBy(() -> filter.doFilter(chunked, new MockHttpServletResponse(), reading))
+                .isInstanceOf(AdmissionRejectedException.class);
+    }
+
+    @Test
+    public void gzipBatchesAreInflatedBeyondTheLimit() throws Exception {
+        final StringBuilder lines = new StringBuilder();
+        while (lines.length() <= 4096) {
+            lines.append("{\"data\": {\"name\": \"Max Mustermann\"}}\n");
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        final GzipRequestFilter sut = new GzipRequestFilter(1024);
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        final FilterChain readAll = (request, response) -> StreamUtils.copy(request.getInputStream(), inflated);
+
+        final MockHttpServletRequest batch = new MockHttpServletRequest("POST", "/batch/external");
+        batch.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        batch.setContent(compressed.toByteArray());
+        sut.doFilter(batch, new MockHttpServletResponse(), readAll);
+        assertThat(inflated.toString(StandardCharsets.UTF_8.name())).isEqualTo(lines.toString());
+
+        final MockHttpServletRequest single = new MockHttpServletRequest("POST", "/external");
+        single.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        single.setContent(compressed.toByteArray());
+        assertThatThrownBy(() -> sut.doFilter(single, new MockHttpServletResponse(), readAll))
+                .isInstanceOf(AdmissionRejectedException.class);
+    }
+
+    @Test
+    public void gzipBodiesReportNonBlockingReadsAsErrors() throws Exception {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("{}".getBytes(StandardCharsets.UTF_8));
+        }
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/external");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(compressed.toByteArray());
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final ReadListener listener = new ReadListener() {
+            @Override
+            public void onDataAvailable() {
+            }
+
+            @Override
+            public void onAllDataRead() {
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                error.set(throwable);
+            }
+        };
+
+        new GzipRequestFilter(1024).doFilter(request, new MockHttpServletResponse(),
+                (inflated, response) -> ((HttpServletRequest) inflated).getInputStream().setReadListener(listener));
+
+        assertThat(error.get()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void largeDocumentsAreValidatedWhileTheyAreRead() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        final ObjectNode data = (ObjectNode) objectMapper.readTree(getTestFileAsString("/forms/gridData.json"));
+        final char[] padding = new char[1100000];
+        Arrays.fill(padding, 'x');
+        data.put("anhang", new String(padding));
+        final ValidationRequestBody body = new ValidationRequestBody();
+        body.setTemplate(getTestFileAsString("/forms/gridForm.json"));
+        body.setData(data.toString());
+        final List<JsonNode> expected = new ArrayList<>();
+        objectMapper.valueToTree(sut.postExternalValidation(body).getBody()).forEach(expected::add);
+        assertThat(expected).isNotEmpty();
+
+        final ObjectNode templateFirst = objectMapper.createObjectNode();
+        templateFirst.set("template", objectMapper.readTree(getTestFileAsString("/forms/gridForm.json")));
+        templateFirst.set("data", data);
+        final ObjectNode dataFirst = objectMapper.createObjectNode();
+        dataFirst.set("data", data);
+        dataFirst.set("template", templateFirst.get("template"));
+        for (ObjectNode request : new ObjectNode[]{templateFirst, dataFirst}) {
+            final byte[] json = mockMvc.perform(post("/external")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsBytes(request)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsByteArray();
+            assertThat(objectMapper.readTree(json)).containsExactlyInAnyOrderElementsOf(expected);
+
+            final byte[] smile = mockMvc.perform(post("/external")
+                    .contentType("application/x-jackson-smile")
+                    .content(smileMapper.writeValueAsBytes(request)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsByteArray();
+            assertThat(objectMapper.readTree(smile)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+
+        mockMvc.perform(post("/external")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"template\": {}, \"data\": {"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/external")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content("{}"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    public void rawDocumentsInJsonSmileCborAndGzip() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        final ObjectNode request = objectMapper.createObjectNode();
+        request.set("template", objectMapper.readTree(getTestFileAsString("/forms/gridForm.json")));
+        request.set("data", objectMapper.readTree(getTestFileAsString("/forms/gridData.json")));
+        final ValidationRequestBody body = new ValidationRequestBody();
+        body.setTemplate(getTestFileAsString("/forms/gridForm.json"));
+        body.setData(getTestFileAsString("/forms/gridData.json"));
+        final List<JsonNode> expected = new ArrayList<>();
+        objectMapper.valueToTree(sut.postExternalValidation(body).getBody()).forEach(expected::add);
+
+        final byte[] json = mockMvc.perform(post("/external")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(objectMapper.readTree(json)).containsExactlyInAnyOrderElementsOf(expected);
+
+        final byte[] smile = mockMvc.perform(post("/external")
+                .contentType("application/x-jackson-smile")
+                .accept("application/x-jackson-smile")
+                .content(smileMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(smileMapper.readTree(smile)).containsExactlyInAnyOrderElementsOf(expected);
+
+        final byte[] cbor = mockMvc.perform(post("/external")
+                .contentType("application/cbor")
+                .accept("application/cbor")
+                .content(cborMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cborMapper.readTree(cbor)).containsExactlyInAnyOrderElementsOf(expected);
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(objectMapper.writeValueAsBytes(request));
+        }
+        final byte[] inflated = mockMvc.perform(post("/external")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(compressed.toByteArray()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(objectMapper.readTree(inflated)).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    public void templateReferencedByHash() throws Exception {
+        final byte[] reference = mockMvc.perform(post("/templates")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(getTestFileAsString("/forms/gridForm.json")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        final String templateHash = new ObjectMapper().readTree(reference).get("templateHash").asText();
+
+        final ValidationRequestBody body = new ValidationRequestBody();
+        body.setData(getTestFileAsString("/forms/gridData.json"));
+        body.setTemplateHash(templateHash);
+        final ValidationRequestBody sent = new ValidationRequestBody();
+        sent.setTemplate(getTestFileAsString("/forms/gridForm.json"));
+        sent.setData(getTestFileAsString("/forms/gridData.json"));
+        assertThat(sut.postExternalValidation(body).getBody()).isEqualTo(sut.postExternalValidation(sent).getBody());
+
+        mockMvc.perform(post("/external")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"templateHash\": \"unknown\", \"data\": {}}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void registryIsApartFromHashUploads() throws Exception {
+        mockMvc.perform(get("/registry"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/templates/antrag")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(getTestFileAsString("/forms/gridForm.json")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void sessionsWithDataThatIsNoObjectAreBadRequests() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ObjectNode request = objectMapper.createObjectNode()
+                .put("template", getTestFileAsString("/forms/gridForm.json"));
+        for (String data : new String[]{"[1, 2]", "{\"unclosed\": "}) {
+            mockMvc.perform(post("/sessions/external")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request.put("data", data))))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
     public String getTestFileAsString(final String testFile) {
         try {
             final InputStreamReader inputStreamReader = new InputStreamReader(
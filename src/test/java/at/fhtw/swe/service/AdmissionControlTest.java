@@ -0,0 +1,57 @@
+package at.fhtw.swe.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void rejectsOversizedRequests() {
+        final AdmissionControl sut = new AdmissionControl(1, 1, 0, 10, 20);
+
+        final Throwable rejection = catchThrowable(() -> sut.acquire("{}", "012345678901234567890"));
+
+        assertThat(rejection).isInstanceOf(AdmissionRejectedException.class);
+        assertThat(((AdmissionRejectedException) rejection).getReason())
+                .isEqualTo(AdmissionRejectedException.Reason.TOO_LARGE);
+        assertThat(sut.getStatistics().getAvailable()).isEqualTo(1);
+    }
+
+    @Test
+    public void queuesUntilTheTimeout() throws Exception {
+        final AdmissionControl sut = new AdmissionControl(1, 1, 50, 10, 10);
+        sut.acquire("{}", "{}");
+
+        final Throwable rejection = catchThrowable(() -> sut.acquire("{}", "{}"));
+
+        assertThat(((AdmissionRejectedException) rejection).getReason())
+                .isEqualTo(AdmissionRejectedException.Reason.QUEUE_TIMEOUT);
+
+        final CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> sut.acquire("{}", "{}"));
+        sut.release();
+        waiting.get(1, TimeUnit.SECONDS);
+        assertThat(sut.getStatistics().getAdmitted()).isEqualTo(2);
+    }
+
+    @Test
+    public void rejectsWhenTheQueueIsFull() throws Exception {
+        final AdmissionControl sut = new AdmissionControl(1, 1, 5000, 10, 10);
+        sut.acquire("{}", "{}");
+        final CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> sut.acquire("{}", "{}"));
+        while (sut.getStatistics().getQueued() == 0) {
+            Thread.sleep(1);
+        }
+
+        final Throwable rejection = catchThrowable(() -> sut.acquire("{}", "{}"));
+
+        assertThat(((AdmissionRejectedException) rejection).getReason())
+                .isEqualTo(AdmissionRejectedException.Reason.QUEUE_FULL);
+        sut.release();
+        waiting.get(1, TimeUnit.SECONDS);
+    }
+}
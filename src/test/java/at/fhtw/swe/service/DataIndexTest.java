@@ -0,0 +1,32 @@
+package at.fhtw.swe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DataIndexTest {
+
+    @Test
+    public void collectsValuesWithGridRows() throws IOException {
+        final DataIndex sut = DataIndex.of(
+                new ObjectMapper().readTree("{\"name\": \"top\", \"grid\": ["
+                        + "{\"name\": \"first\"}, {\"other\": 1}, {\"name\": \"third\"}]}"),
+                new HashSet<>(Arrays.asList("name", "grid", "missing")));
+
+        final List<DataIndex.IndexedValue> names = sut.get("name");
+        assertThat(names).extracting(value -> value.getValue().asText()).containsExactly("top", "first", "third");
+        assertThat(names).extracting(DataIndex.IndexedValue::getRow).containsExactly(null, 0, 2);
+        assertThat(names).extracting(value -> value.getPath().toString())
+                .containsExactly("/name", "/grid/0/name", "/grid/2/name");
+        assertThat(sut.get("grid")).hasSize(1);
+        assertThat(sut.get("grid").get(0).getValue().size()).isEqualTo(3);
+        assertThat(sut.get("missing")).isEmpty();
+        assertThat(sut.get("other")).isEmpty();
+    }
+}
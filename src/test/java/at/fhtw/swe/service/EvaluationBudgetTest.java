@@ -0,0 +1,81 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.ValidationError;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class EvaluationBudgetTest {
+
+    private static final String EXPENSIVE = "$count(items[value > 0][value % 2 = 0][value % 3 = 0])";
+
+    private static final String FORM = "{\"components\": [{\"id\": \"items\", \"type\": \"textfield\","
+            + " \"validate\": {\"custom\": {\"external\": {\"jsonata\": \"" + EXPENSIVE + " > 0\"}}}}]}";
+
+    private final TemplateCache templateCache = new TemplateCache(16, Long.MAX_VALUE, new PatternCache(16, 100));
+
+    @Test
+    public void nativeEvaluationStopsAtItsBudget() {
+        final JsonataEngine sut = new JsonataEngine("native", 1, 5000, 16, 0, 1, 0);
+
+        final Throwable error = catchThrowable(() -> sut.validate(sut.parseData(items(500_000)), EXPENSIVE, null));
+
+        assertThat(error).isInstanceOf(EvaluationTimeoutException.class);
+        assertThat(sut.validate(sut.parseData(items(10)), EXPENSIVE, null)).isEqualTo("1");
+    }
+
+    @Test
+    public void timedOutScriptEngineIsReplaced() {
+        final JsonataEngine sut = new JsonataEngine("script", 1, 30000, 16, -1, 1, 0);
+        try {
+            final Throwable error = catchThrowable(() -> sut.validate(sut.parseData(items(200_000)), EXPENSIVE, null));
+
+            assertThat(error).isInstanceOf(EvaluationTimeoutException.class);
+            assertThat(sut.getStatistics().getQuarantined()).isEqualTo(1);
+        } finally {
+            sut.shutdown();
+        }
+    }
+
+    @Test
+    public void quarantinedEnginesBeyondTheCapCountAgainstThePool() {
+        final JsonataEngine sut = new JsonataEngine("script", 1, 100, 16, -1, 1, 1);
+        try {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                final Throwable error =
+                        catchThrowable(() -> sut.validate(sut.parseData(items(200_000)), EXPENSIVE, null));
+                assertThat(error).isInstanceOf(EvaluationTimeoutException.class);
+            }
+
+            final Throwable error = catchThrowable(() -> sut.validate(sut.parseData(items(10)), EXPENSIVE, null));
+
+            assertThat(error).isInstanceOf(EngineUnavailableException.class);
+            assertThat(sut.getStatistics().getQuarantined()).isEqualTo(2);
+            assertThat(sut.getStatistics().getCreated()).isEqualTo(1);
+        } finally {
+            sut.shutdown();
+        }
+    }
+
+    @Test
+    public void exceededRequestBudgetIsATimeoutViolation() {
+        final JsonataEngine jsonataEngine = new JsonataEngine("native", 1, 5000, 16, 0, 0, 0);
+        final Validator sut = new Validator(
+                jsonataEngine, templateCache, ValidationMetrics.disabled(), false, 0, 64, 256, 1);
+
+        final Set<ValidationError> errors = sut.validateForm(FORM, items(500_000), false);
+
+        assertThat(errors).containsExactly(new ValidationError().key("items").violation("timeout").path("/items"));
+    }
+
+    private static String items(final int count) {
+        final StringBuilder data = new StringBuilder("{\"items\": [");
+        for (int index = 0; index < count; index++) {
+            data.append(index > 0 ? ", " : "").append("{\"value\": ").append(index).append('}');
+        }
+        return data.append("]}").toString();
+    }
+}
@@ -0,0 +1,47 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledForm;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FormCompilerTest {
+
+    private final FormCompiler sut = new FormCompiler(new PatternCache(16, 0));
+
+    @Test
+    public void bindsTheCurrentDateLiteralsAsAVariable() {
+        final CompiledForm form = sut.compile(form(
+                "$toMillis(a) > $toMillis(\\\"@date:now@\\\") and $toMillis(a) > $toMillis('@date:now@')"), "hash");
+
+        assertThat(form.getComponents().get(0).getRules(false).getJsonata())
+                .isEqualTo("$toMillis(a) > $toMillis($now) and $toMillis(a) > $toMillis($now)");
+        assertThat(form.isTimeDependent(false)).isTrue();
+    }
+
+    @Test
+    public void leavesTheCurrentDateEmbeddedInALiteral() {
+        final CompiledForm form = sut.compile(form(
+                "b = \\\"since @date:now@\\\" or b != \\\"'@date:now@'\\\""), "hash");
+
+        assertThat(form.getComponents().get(0).getRules(false).getJsonata())
+                .isEqualTo("b = \"since @date:now@\" or b != \"'@date:now@'\"");
+        assertThat(form.isTimeDependent(false)).isTrue();
+    }
+
+    @Test
+    public void substitutesTheCurrentDateEmbeddedInALiteralWhenEvaluated() {
+        final TemplateCache templateCache = new TemplateCache(16, Long.MAX_VALUE, new PatternCache(16, 0));
+        final Validator validator = new Validator(new JsonataEngine("native", 1, 5000, 16, -1, 0, 0),
+                templateCache, ValidationMetrics.disabled(), false, 0, 64, 256, 0);
+
+        final String embedded = "\\\"since @date:now@\\\" != \\\"since @\\\" & \\\"date:now@\\\"";
+
+        assertThat(validator.validateForm(form(embedded), "{\"a\": 1}", false)).isEmpty();
+    }
+
+    private static String form(final String jsonata) {
+        return "{\"components\": [{\"id\": \"a\", \"type\": \"textfield\","
+                + " \"validate\": {\"custom\": {\"external\": {\"jsonata\": \"" + jsonata + "\"}}}}]}";
+    }
+}
@@ -0,0 +1,49 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.GuardedPattern;
+import at.fhtw.swe.model.ValidationRules;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GridColumnTest {
+
+    @Test
+    public void marksTheRowsViolatingAnyRule() throws IOException {
+        final DataIndex index = DataIndex.of(
+                new ObjectMapper().readTree("{\"grid\": [{\"amount\": 5}, {\"amount\": \"\"}, {\"amount\": 50},"
+                        + "{\"amount\": 12345}, {\"other\": 1}, {\"amount\": 7}]}"),
+                Collections.singleton("amount"));
+        final List<DataIndex.IndexedValue> cells = index.get("amount");
+        final ValidationRules rules = ValidationRules.builder().required(true).max(20.0).maxLength(4).build();
+
+        final GridColumn sut = new GridColumn(cells, 1, cells.size());
+
+        assertThat(sut.size()).isEqualTo(4);
+        assertThat(sut.rows()).containsExactly(1, 2, 3, 5);
+        assertThat(sut.violations(rules, ValidationMetrics.disabled())).containsExactly(true, true, true, false);
+    }
+
+    @Test
+    public void keepsThePatternResultOfEachCell() throws IOException {
+        final DataIndex index = DataIndex.of(
+                new ObjectMapper().readTree("{\"grid\": [{\"code\": \"aaa\"}, {\"code\": \"b\"},"
+                        + " {\"code\": \"aaaaaaaaaaaaaaaaaaaaaaaaa!\"}]}"),
+                Collections.singleton("code"));
+        final List<DataIndex.IndexedValue> cells = index.get("code");
+        final ValidationRules rules = ValidationRules.builder().pattern(new PatternCache(16, 50).get("(.*a){20}|a+"))
+                .build();
+
+        final GridColumn sut = new GridColumn(cells, 0, cells.size());
+
+        assertThat(sut.violations(rules, ValidationMetrics.disabled())).containsExactly(false, true, true);
+        assertThat(sut.match(0)).isEqualTo(GuardedPattern.Match.MATCH);
+        assertThat(sut.match(1)).isEqualTo(GuardedPattern.Match.NO_MATCH);
+        assertThat(sut.match(2)).isEqualTo(GuardedPattern.Match.TIMEOUT);
+    }
+}
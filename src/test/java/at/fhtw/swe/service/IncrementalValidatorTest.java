@@ -0,0 +1,254 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.FieldChange;
+import at.fhtw.swe.model.SessionState;
+import at.fhtw.swe.model.ValidationDelta;
+import at.fhtw.swe.model.ValidationError;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class IncrementalValidatorTest {
+
+    private static final String[][] FIXTURES = {
+            {"/forms/completeForm.json", "/forms/completeData.json"},
+            {"/forms/gridForm.json", "/forms/gridData.json"},
+            {"/forms/internalValidationForm.json", "/forms/internalValidationData.json"}
+    };
+
+    private final TemplateCache templateCache = new TemplateCache(16, Long.MAX_VALUE, new PatternCache(16, 100));
+    private final Validator validator = new Validator(
+            new JsonataEngine("native", 1, 5000, 16, 0, 0, 0), templateCache, ValidationMetrics.disabled(),
+            false, 0, 64, 256, 0);
+    private final IncrementalValidator sut = new IncrementalValidator(
+            validator, templateCache, ValidationMetrics.disabled(), 16, Long.MAX_VALUE, 60000);
+
+    @Test
+    public void sessionsStartWithTheErrorsOfTheWholeForm() {
+        for (String[] testCase : FIXTURES) {
+            for (boolean internal : new boolean[]{true, false}) {
+                final SessionState session = sut.open(resource(testCase[0]), resource(testCase[1]), internal);
+
+                assertThat(session.getErrors())
+                        .isEqualTo(validator.validateForm(resource(testCase[0]), resource(testCase[1]), internal));
+                assertThat(session.getTemplateHash()).isEqualTo(templateCache.get(resource(testCase[0])).getHash());
+            }
+        }
+    }
+
+    @Test
+    public void editsAnswerTheChangedErrors() {
+        final SessionState session = sut.open(
+                resource("/forms/gridForm.json"), resource("/forms/gridData.json"), false);
+        final ValidationError jsonata = new ValidationError().key("nachname").violation("jsonata")
+                .row(0).path("/beteiligtePersonen/0/nachname");
+        final ValidationError minLength = new ValidationError().key("weitereBeteiligtePersonen").violation("minLength")
+                .path("/weitereBeteiligtePersonen");
+        assertThat(session.getErrors()).containsExactlyInAnyOrder(jsonata, minLength);
+
+        final ValidationDelta cleared = sut.edit(session.getId(), session.getTemplateHash(),
+                Collections.singletonList(change("nachname", 0, null, TextNode.valueOf(""))));
+        assertThat(cleared.getAdded()).isEmpty();
+        assertThat(cleared.getRemoved()).containsExactly(jsonata);
+
+        final ValidationDelta unchanged = sut.edit(session.getId(), null,
+                Collections.singletonList(change("vorname", 0, null, TextNode.valueOf("Moritz"))));
+        assertThat(unchanged.getAdded()).isEmpty();
+        assertThat(unchanged.getRemoved()).isEmpty();
+
+        final JsonNode rows = JsonNodeFactory.instance.arrayNode()
+                .add(JsonNodeFactory.instance.objectNode().put("vorname", "Erika"));
+        final ValidationDelta structural = sut.edit(session.getId(), null, Arrays.asList(
+                change("weitereBeteiligtePersonen", null, null, rows),
+                change("nachname", 1, "beteiligtePersonen", TextNode.valueOf("Muster"))));
+        assertThat(structural.getAdded()).containsExactly(new ValidationError().key("nachname").violation("jsonata")
+                .row(1).path("/beteiligtePersonen/1/nachname"));
+        assertThat(structural.getRemoved()).containsExactly(minLength);
+    }
+
+    @Test
+    public void editsAddressTheGridOfASharedKey() throws IOException {
+        final ObjectNode data = sharedKeyData();
+        final SessionState session = sut.open(
+                templateCache.get(resource("/forms/gridForm.json")), data.deepCopy(), data.toString().length(), false);
+
+        sut.edit(session.getId(), null, Collections.singletonList(
+                change("nachname", 0, "weitereBeteiligtePersonen", TextNode.valueOf("Muster"))));
+        ((ObjectNode) data.get("weitereBeteiligtePersonen").get(0)).put("nachname", "Muster");
+
+        final SessionState reopened = sut.open(
+                templateCache.get(resource("/forms/gridForm.json")), data, data.toString().length(), false);
+        assertThat(reopened.getErrors()).isEqualTo(
+                validator.validateForm(resource("/forms/gridForm.json"), data.toString(), false));
+        assertThat(data.at("/beteiligtePersonen/0/nachname").asText()).isEqualTo("Mustermann");
+
+        assertThat(catchThrowable(() -> sut.edit(session.getId(), null,
+                Collections.singletonList(change("nachname", 0, null, TextNode.valueOf("x"))))))
+                .isInstanceOf(SessionException.class)
+                .extracting(error -> ((SessionException) error).getReason())
+                .isEqualTo(SessionException.Reason.INVALID_CHANGE);
+        assertThat(catchThrowable(() -> sut.edit(session.getId(), null,
+                Collections.singletonList(change("nachname", null, null, TextNode.valueOf("x"))))))
+                .isInstanceOf(SessionException.class)
+                .extracting(error -> ((SessionException) error).getReason())
+                .isEqualTo(SessionException.Reason.INVALID_CHANGE);
+    }
+
+    @Test
+    public void editedSessionsMatchAFullValidation() throws IOException {
+        for (boolean internal : new boolean[]{true, false}) {
+            final ObjectNode data = sharedKeyData();
+            final SessionState session = sut.open(templateCache.get(resource("/forms/gridForm.json")),
+                    data.deepCopy(), data.toString().length(), internal);
+            final Set<ValidationError> errors = new LinkedHashSet<>(session.getErrors());
+            assertThat(errors)
+                    .isEqualTo(validator.validateForm(resource("/forms/gridForm.json"), data.toString(), internal));
+
+            final List<List<FieldChange>> edits = Arrays.asList(
+                    Collections.singletonList(change("nachname", 1, "weitereBeteiligtePersonen", TextNode.valueOf(""))),
+                    Collections.singletonList(change("vorname", 0, "beteiligtePersonen", TextNode.valueOf(""))),
+                    Arrays.asList(
+                            change("nachname", 1, "beteiligtePersonen", TextNode.valueOf("Muster")),
+                            change("vorname", 0, "weitereBeteiligtePersonen", TextNode.valueOf("Erika"))),
+                    Collections.singletonList(change("vorname", 0, "beteiligtePersonen", TextNode.valueOf("Max"))),
+                    Collections.singletonList(change("weitereBeteiligtePersonen", null, null,
+                            JsonNodeFactory.instance.arrayNode())));
+            for (List<FieldChange> edit : edits) {
+                final ValidationDelta delta = sut.edit(session.getId(), null, edit);
+                errors.removeAll(delta.getRemoved());
+                errors.addAll(delta.getAdded());
+                edit.forEach(change -> apply(data, change));
+
+                assertThat(errors)
+                        .isEqualTo(validator.validateForm(resource("/forms/gridForm.json"), data.toString(), internal));
+            }
+        }
+    }
+
+    @Test
+    public void failedEditsLeaveTheSessionUnchanged() throws IOException {
+        final ObjectNode data = sharedKeyData();
+        final SessionState session = sut.open(
+                templateCache.get(resource("/forms/gridForm.json")), data.deepCopy(), data.toString().length(), false);
+        final Set<ValidationError> errors = new LinkedHashSet<>(session.getErrors());
+
+        assertThat(catchThrowable(() -> sut.edit(session.getId(), null, Arrays.asList(
+                change("nachname", 0, "beteiligtePersonen", TextNode.valueOf("")),
+                change("vorname", 1, "weitereBeteiligtePersonen", JsonNodeFactory.instance.objectNode()),
+                change("nachname", 7, "beteiligtePersonen", TextNode.valueOf("x"))))))
+                .isInstanceOf(SessionException.class);
+
+        final FieldChange structural = change("weitereBeteiligtePersonen", null, null,
+                JsonNodeFactory.instance.arrayNode().add(JsonNodeFactory.instance.objectNode().put("vorname", "")));
+        final ValidationDelta delta = sut.edit(session.getId(), null, Collections.singletonList(structural));
+        errors.removeAll(delta.getRemoved());
+        errors.addAll(delta.getAdded());
+        apply(data, structural);
+
+        assertThat(errors)
+                .isEqualTo(validator.validateForm(resource("/forms/gridForm.json"), data.toString(), false));
+    }
+
+    @Test
+    public void rejectsDataThatIsNoObject() {
+        for (String data : new String[]{"[1, 2]", "{\"unclosed\": "}) {
+            assertThat(catchThrowable(() -> sut.open(resource("/forms/gridForm.json"), data, false)))
+                    .isInstanceOf(SessionException.class)
+                    .extracting(error -> ((SessionException) error).getReason())
+                    .isEqualTo(SessionException.Reason.INVALID_DATA);
+        }
+    }
+
+    @Test
+    public void dropsTheLeastRecentlyUsedSessionsBeyondTheWeight() {
+        final String data = resource("/forms/gridData.json");
+        final IncrementalValidator bounded = new IncrementalValidator(
+                validator, templateCache, ValidationMetrics.disabled(), 16, 2L * data.length(), 60000);
+
+        final SessionState first = bounded.open(resource("/forms/gridForm.json"), data, false);
+        final SessionState second = bounded.open(resource("/forms/gridForm.json"), data, false);
+        bounded.edit(first.getId(), null, Collections.emptyList());
+        bounded.open(resource("/forms/gridForm.json"), data, false);
+
+        assertThat(bounded.edit(first.getId(), null, Collections.emptyList()).getAdded()).isEmpty();
+        assertThat(catchThrowable(() -> bounded.edit(second.getId(), null, Collections.emptyList())))
+                .isInstanceOf(SessionException.class)
+                .extracting(error -> ((SessionException) error).getReason())
+                .isEqualTo(SessionException.Reason.NOT_FOUND);
+    }
+
+    @Test
+    public void rejectsUnknownSessionsAndTemplates() {
+        final SessionState session = sut.open(
+                resource("/forms/gridForm.json"), resource("/forms/gridData.json"), false);
+
+        assertThat(catchThrowable(() -> sut.edit(session.getId(), "other", Collections.emptyList())))
+                .isInstanceOf(SessionException.class)
+                .extracting(error -> ((SessionException) error).getReason())
+                .isEqualTo(SessionException.Reason.TEMPLATE_CHANGED);
+        assertThat(catchThrowable(() -> sut.edit(session.getId(), null,
+                Collections.singletonList(change("nachname", 7, "beteiligtePersonen", TextNode.valueOf("x"))))))
+                .isInstanceOf(SessionException.class)
+                .extracting(error -> ((SessionException) error).getReason())
+                .isEqualTo(SessionException.Reason.INVALID_CHANGE);
+
+        sut.close(session.getId());
+        assertThat(catchThrowable(() -> sut.edit(session.getId(), null, Collections.emptyList())))
+                .isInstanceOf(SessionException.class)
+                .extracting(error -> ((SessionException) error).getReason())
+                .isEqualTo(SessionException.Reason.NOT_FOUND);
+    }
+
+    /**
+     * The grid data with rows in both grids, which share the keys of their columns.
+     */
+    private static ObjectNode sharedKeyData() throws IOException {
+        final ObjectNode data = (ObjectNode) new ObjectMapper().readTree(resource("/forms/gridData.json"));
+        final ArrayNode rows = data.putArray("weitereBeteiligtePersonen");
+        rows.addObject().put("vorname", "Erika").put("nachname", "Musterfrau");
+        rows.addObject().put("vorname", "Hans").put("nachname", "Huber");
+        return data;
+    }
+
+    private static void apply(final ObjectNode data, final FieldChange change) {
+        final ObjectNode parent = change.getRow() == null
+                ? data
+                : (ObjectNode) data.get(change.getGrid()).get(change.getRow());
+        parent.set(change.getKey(), change.getValue());
+    }
+
+    private static FieldChange change(final String key, final Integer row, final String grid, final JsonNode value) {
+        final FieldChange change = new FieldChange();
+        change.setKey(key);
+        change.setRow(row);
+        change.setGrid(grid);
+        change.setValue(value);
+        return change;
+    }
+
+    private static String resource(final String name) {
+        try (InputStream stream = IncrementalValidatorTest.class.getResourceAsStream(name);
+             Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ValidationError;
+import at.fhtw.swe.service.jsonata.Expression;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * The native jsonata engine gives the results of the script engine running the reference implementation.
+ */
+public class JsonataParityTest {
+
+    private static final String DATA = "{"
+            + "\"firstName\": \"Max\", \"blank\": \"\", \"flag\": true, \"nothing\": null,"
+            + "\"count\": 3, \"price\": 2.5, \"tags\": [\"a\", \"b\"], \"empty\": [], \"matrix\": [[1, 2], [3, 4]],"
+            + "\"birthdate\": \"2019-01-01T10:00:00.000Z\", \"nested\": {\"inner\": {\"x\": 1}},"
+            + "\"beteiligtePersonen\": [{\"vorname\": \"Max\", \"nachname\": \"Mustermann\"},"
+            + " {\"vorname\": \"Kein nachname\"}, {\"nachname\": \"Kein vorname\", \"alter\": 42}]}";
+
+    private static final String[] EXPRESSIONS = {
+            "firstName", "missing", "nested.inner.x", "nested.inner", "tags", "empty", "matrix", "nothing",
+            "beteiligtePersonen.vorname", "beteiligtePersonen.alter", "matrix[0]", "matrix[1][0]", "tags[-1]",
+            "tags[5]", "beteiligtePersonen[1].vorname", "beteiligtePersonen[$rownum].nachname",
+            "beteiligtePersonen[$rownum]", "beteiligtePersonen[vorname = 'Max'].nachname",
+            "beteiligtePersonen[alter > 40].nachname", "beteiligtePersonen[$exists(nachname)].vorname",
+            "`firstName`", "nested.'inner'.x", "$.firstName", "$$.tags[0]", "$",
+            "$boolean(firstName)", "$boolean(blank)", "$boolean(missing)", "$boolean(empty)", "$boolean(tags)",
+            "$boolean(nothing)", "$boolean(count)", "$boolean(nested)",
+            "$not(missing)", "$not(flag)", "$exists(missing)", "$exists(nothing)",
+            "$not($boolean(beteiligtePersonen[$rownum].vorname) and $boolean(beteiligtePersonen[$rownum].nachname))",
+            "missing and true", "true and missing", "false and missing", "missing or false", "missing or missing",
+            "flag or missing", "count = 3", "count != 3", "price < 3", "firstName >= 'M'", "firstName = missing",
+            "firstName in tags", "'a' in tags", "count in 3",
+            "count + price", "count - 1", "count * price", "count / 2", "count % 2", "-count", "- 5", "1 / 3",
+            "missing + 1", "firstName & ' ' & count", "price & missing", "tags & ''",
+            "count > 2 ? 'big' : 'small'", "missing ? 1", "(count + 1) * 2",
+            "$string(price)", "$string(nested)", "$string(tags)", "$string(0.1 + 0.2)", "$number('12.5')",
+            "$length(firstName)", "$length(missing)", "$uppercase(firstName)", "$lowercase(firstName)",
+            "$trim('  a  b ')", "$count(tags)", "$count(missing)", "$count(firstName)", "$sum(matrix[0])",
+            "$max(beteiligtePersonen.alter)", "$min(matrix[0])", "$average(matrix[1])",
+            "$abs(-2.5)", "$floor(price)", "$ceil(price)",
+            "$toMillis(birthdate)", "$toMillis(birthdate) > $toMillis($now)", "$toMillis('2018')",
+            "$toMillis('2018-12-03')", "$toMillis('2018-12-03T22:38:29Z')", "$toMillis('2018-12-03T22:38:29.042Z')",
+            "$toMillis('2018-12-03T22:38:29+01:00')", "$toMillis('2018-12-03T22:38:29')",
+            "$toMillis('2018-12-03T22:38:29.04Z')", "$toMillis('2018-12-03T22:38:29.042123Z')", "$toMillis('2018-02-30')",
+            "$toMillis(missing)", "$now = $now",
+            "firstName > 1", "flag + 1", "-firstName", "$length(count)", "$sum(tags)", "$number('x')",
+            "$toMillis('yesterday')", "tags < 'b'"
+    };
+
+    private static final String[][] FIXTURES = {
+            {"/forms/completeForm.json", "/forms/completeData.json"},
+            {"/forms/gridForm.json", "/forms/gridData.json"},
+            {"/forms/internalValidationForm.json", "/forms/internalValidationData.json"}
+    };
+
+    private static JsonataEngine scriptEngine;
+    private static JsonataEngine nativeEngine;
+    private static JsonataEngine compilingEngine;
+
+    @BeforeClass
+    public static void setUp() {
+        scriptEngine = new JsonataEngine("script", 1, 5000, 512, -1, 0, 0);
+        nativeEngine = new JsonataEngine("native", 1, 5000, 512, -1, 0, 0);
+        compilingEngine = new JsonataEngine("native", 1, 5000, 512, 0, 0, 0);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        assertThat(nativeEngine.getStatistics().getCreated()).isZero();
+        assertThat(compilingEngine.getStatistics().getCreated()).isZero();
+    }
+
+    @Test
+    public void expressionsEvaluateAlike() {
+        final JsonataData scriptData = scriptEngine.parseData(DATA);
+        final JsonataData nativeData = nativeEngine.parseData(DATA);
+        final JsonataData compiledData = compilingEngine.parseData(DATA);
+
+        for (String expression : EXPRESSIONS) {
+            for (Integer rownum : new Integer[]{null, 0, 1, 5}) {
+                final Object expected = evaluate(scriptEngine, scriptData, expression, rownum);
+                final Object actual = evaluate(nativeEngine, nativeData, expression, rownum);
+                final Object compiled = evaluate(compilingEngine, compiledData, expression, rownum);
+                if (expected instanceof Throwable) {
+                    assertThat(actual).as(expression).isInstanceOf(Throwable.class);
+                    assertThat(compiled).as(expression).isInstanceOf(Throwable.class);
+                } else {
+                    assertThat(actual).as(expression + " with $rownum " + rownum).isEqualTo(expected);
+                    assertThat(compiled).as(expression + " compiled with $rownum " + rownum).isEqualTo(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formsValidateAlike() {
+        final TemplateCache templateCache = new TemplateCache(16, Long.MAX_VALUE, new PatternCache(16, 100));
+        final Validator scriptValidator = new Validator(scriptEngine, templateCache, ValidationMetrics.disabled(), false, 0, 64, 256, 0);
+        final Validator nativeValidator = new Validator(nativeEngine, templateCache, ValidationMetrics.disabled(), false, 0, 64, 256, 0);
+        final Validator compilingValidator = new Validator(compilingEngine, templateCache, ValidationMetrics.disabled(), false, 0, 64, 256, 0);
+
+        for (String[] testCase : FIXTURES) {
+            final CompiledForm form = templateCache.get(resource(testCase[0]));
+            final String data = resource(testCase[1]);
+            for (boolean internal : new boolean[]{true, false}) {
+                final Set<ValidationError> expected = scriptValidator.validateForm(form, data, internal);
+                assertThat(nativeValidator.validateForm(form, data, internal)).isEqualTo(expected);
+                assertThat(compilingValidator.validateForm(form, data, internal)).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void expressionsCompileOnceHot() {
+        final Expression expression = Expression.parse("rows[$rownum].amount * 2", 2);
+        final JsonNode data = JsonNodeFactory.instance.objectNode().set("rows", JsonNodeFactory.instance.arrayNode()
+                .add(JsonNodeFactory.instance.objectNode().put("amount", 1))
+                .add(JsonNodeFactory.instance.objectNode().put("amount", 2)));
+        final Map<String, JsonNode> bindings = Collections.singletonMap("rownum", IntNode.valueOf(1));
+
+        for (int evaluation = 0; evaluation < 2; evaluation++) {
+            assertThat(Expression.stringify(expression.evaluate(data, bindings))).isEqualTo("4");
+            assertThat(expression.isCompiled()).isFalse();
+        }
+        assertThat(Expression.stringify(expression.evaluate(data, bindings))).isEqualTo("4");
+        assertThat(expression.isCompiled()).isTrue();
+    }
+
+    private static Object evaluate(
+            final JsonataEngine engine, final JsonataData data, final String expression, final Integer rownum) {
+        final Throwable error = catchThrowable(() -> engine.validate(data, expression, rownum));
+        return error != null ? error : engine.validate(data, expression, rownum);
+    }
+
+    private static String resource(final String name) {
+        try (InputStream stream = JsonataParityTest.class.getResourceAsStream(name);
+             Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package at.fhtw.swe.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoadMonitorTest {
+
+    private WarmUp warmUp;
+    private LoadMonitor sut;
+
+    @Before
+    public void setUp() {
+        final JsonataEngine jsonataEngine = new JsonataEngine("native", 1, 5000, 16, -1, 0, 0);
+        warmUp = new WarmUp(null, jsonataEngine, null, false, "", 0, 0, false);
+        sut = new LoadMonitor(jsonataEngine, warmUp, 2, 100, 0, 16, 60000, 8);
+    }
+
+    @Test
+    public void notReadyUntilWarm() {
+        assertThat(sut.getStatistics().isReady()).isFalse();
+
+        warmUp.start();
+
+        assertThat(sut.getStatistics().isReady()).isTrue();
+    }
+
+    @Test
+    public void notReadyOverTheInFlightLimit() {
+        warmUp.start();
+        final long first = sut.enter();
+        final long second = sut.enter();
+        sut.enter();
+
+        assertThat(sut.getStatistics().getInFlight()).isEqualTo(3);
+        assertThat(sut.getStatistics().isReady()).isFalse();
+
+        sut.exit();
+        assertThat(sut.getStatistics().isReady()).isTrue();
+        sut.exit(first);
+        sut.exit(second);
+        assertThat(sut.getStatistics().getInFlight()).isZero();
+    }
+
+    @Test
+    public void notReadyWhileTheRecentP99IsTooHigh() {
+        warmUp.start();
+        for (int request = 0; request < 99; request++) {
+            sut.exit(sut.enter());
+        }
+        assertThat(sut.getStatistics().isReady()).isTrue();
+
+        sut.exit(sut.enter() - TimeUnit.SECONDS.toNanos(1));
+        sut.exit(sut.enter() - TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(sut.getStatistics().getP99Millis()).isGreaterThanOrEqualTo(1000);
+        assertThat(sut.getStatistics().isReady()).isFalse();
+    }
+
+    @Test
+    public void slowValidationsCountOnceTheWindowHasEnoughSamples() {
+        warmUp.start();
+        sut.exit(sut.enter() - TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(sut.getStatistics().getP99Millis()).isGreaterThanOrEqualTo(1000);
+        assertThat(sut.getStatistics().isReady()).isTrue();
+
+        for (int request = 0; request < 7; request++) {
+            sut.exit(sut.enter());
+        }
+
+        assertThat(sut.getStatistics().isReady()).isFalse();
+    }
+}
@@ -0,0 +1,62 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.GuardedPattern;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternCacheTest {
+
+    @Test
+    public void compilesEachRegexOnce() {
+        final PatternCache sut = new PatternCache(16, 0);
+
+        final GuardedPattern first = sut.get("[a-z]+");
+        assertThat(sut.get("[a-z]+")).isSameAs(first);
+        assertThat(first.matches("abc")).isEqualTo(GuardedPattern.Match.MATCH);
+        assertThat(first.matches("ABC")).isEqualTo(GuardedPattern.Match.NO_MATCH);
+        assertThat(sut.getStatistics().getHits()).isEqualTo(1);
+        assertThat(sut.getStatistics().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final PatternCache sut = new PatternCache(1, 0);
+
+        sut.get("a");
+        sut.get("b");
+
+        assertThat(sut.getStatistics().getEvictions()).isEqualTo(1);
+        assertThat(sut.getStatistics().getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void stopsCatastrophicBacktracking() {
+        final GuardedPattern sut = new PatternCache(16, 50).get("(.*a){20}");
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            value.append('a');
+        }
+        value.append('!');
+
+        assertThat(sut.matches(value.toString())).isEqualTo(GuardedPattern.Match.TIMEOUT);
+    }
+
+    @Test
+    public void doesNotKeepTheLastValueAlive() throws InterruptedException {
+        final GuardedPattern sut = new PatternCache(16, 0).get("[a-z]+");
+        String value = new String(new char[1 << 20]).replace('\0', 'a');
+        assertThat(sut.matches(value)).isEqualTo(GuardedPattern.Match.MATCH);
+        final WeakReference<String> matched = new WeakReference<>(value);
+        value = null;
+
+        for (int attempt = 0; attempt < 10 && matched.get() != null; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(matched.get()).isNull();
+    }
+}
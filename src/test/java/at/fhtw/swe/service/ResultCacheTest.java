@@ -0,0 +1,78 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.ValidationError;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultCacheTest {
+
+    private static final String FORM =
+            "{\"components\":[{\"id\":\"a\",\"type\":\"textfield\",\"validate\":{\"required\":true}}]}";
+    private static final String FORM_WITH_NOW = "{\"components\":[{\"id\":\"a\",\"type\":\"textfield\","
+            + "\"validate\":{\"custom\":{\"external\":{\"jsonata\":\"$toMillis(a) > $toMillis(\\\"@date:now@\\\")\"}}}}]}";
+
+    private final TemplateCache templateCache = new TemplateCache(8, Long.MAX_VALUE, new PatternCache(16, 0));
+    private final AtomicInteger validations = new AtomicInteger();
+
+    @Test
+    public void validatesOncePerTemplateDataAndMode() {
+        final ResultCache sut = new ResultCache(true, 8, 60000);
+        final CompiledForm form = templateCache.get(FORM);
+
+        final Set<ValidationError> first = sut.get(form, "{}", false, errors("required"));
+        assertThat(sut.get(form, "{}", false, errors("required"))).isEqualTo(first);
+        sut.get(form, "{}", true, errors("required"));
+        sut.get(form, "{\"a\": \"x\"}", false, errors());
+
+        assertThat(validations.get()).isEqualTo(3);
+        assertThat(sut.getStatistics().getHits()).isEqualTo(1);
+        assertThat(sut.getStatistics().getSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void bypassesTimeDependentTemplatesAndTimeouts() {
+        final ResultCache sut = new ResultCache(true, 8, 60000);
+        final CompiledForm form = templateCache.get(FORM_WITH_NOW);
+        assertThat(form.isTimeDependent(false)).isTrue();
+        assertThat(form.isTimeDependent(true)).isFalse();
+
+        sut.get(form, "{}", false, errors());
+        sut.get(form, "{}", false, errors());
+        sut.get(templateCache.get(FORM), "{}", false, errors("timeout"));
+        sut.get(templateCache.get(FORM), "{}", false, errors("timeout"));
+
+        assertThat(validations.get()).isEqualTo(4);
+        assertThat(sut.getStatistics().getSize()).isZero();
+    }
+
+    @Test
+    public void expiresEntries() throws InterruptedException {
+        final ResultCache sut = new ResultCache(true, 8, 1);
+        final CompiledForm form = templateCache.get(FORM);
+
+        sut.get(form, "{}", false, errors("required"));
+        Thread.sleep(5);
+        sut.get(form, "{}", false, errors("required"));
+
+        assertThat(validations.get()).isEqualTo(2);
+        assertThat(sut.getStatistics().getHits()).isZero();
+    }
+
+    private Supplier<Set<ValidationError>> errors(final String... violations) {
+        return () -> {
+            validations.incrementAndGet();
+            final Set<ValidationError> errors = new LinkedHashSet<>();
+            for (String violation : violations) {
+                errors.add(new ValidationError().key("a").violation(violation));
+            }
+            return errors;
+        };
+    }
+}
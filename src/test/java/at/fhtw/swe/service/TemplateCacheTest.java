@@ -0,0 +1,56 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CacheStatistics;
+import at.fhtw.swe.model.CompiledForm;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TemplateCacheTest {
+
+    private static final String FORM_A =
+            "{\"components\":[{\"id\":\"a\",\"type\":\"textfield\",\"validate\":{\"required\":true}}]}";
+    private static final String FORM_B =
+            "{\"components\":[{\"id\":\"b\",\"type\":\"textfield\",\"validate\":{\"pattern\":\"x+\"}}]}";
+
+    @Test
+    public void compilesOncePerTemplate() {
+        final TemplateCache sut = new TemplateCache(8, Long.MAX_VALUE, new PatternCache(16, 0));
+
+        final CompiledForm first = sut.get(FORM_A);
+        final CompiledForm second = sut.get(FORM_A);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getComponents()).hasSize(1);
+        assertThat(first.getComponents().get(0).getRules(false).isRequired()).isTrue();
+        assertThat(first.getComponents().get(0).getRules(true).isRequired()).isFalse();
+
+        final CacheStatistics statistics = sut.getStatistics();
+        assertThat(statistics.getHits()).isEqualTo(1);
+        assertThat(statistics.getMisses()).isEqualTo(1);
+        assertThat(statistics.getEvictions()).isEqualTo(0);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final TemplateCache sut = new TemplateCache(1, Long.MAX_VALUE, new PatternCache(16, 0));
+
+        final CompiledForm first = sut.get(FORM_A);
+        sut.get(FORM_B);
+
+        assertThat(sut.get(FORM_A)).isNotSameAs(first);
+        assertThat(sut.getStatistics().getEvictions()).isEqualTo(2);
+        assertThat(sut.getStatistics().getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsByWeight() {
+        final TemplateCache sut = new TemplateCache(8, FORM_A.length() + FORM_B.length() - 1, new PatternCache(16, 0));
+
+        sut.get(FORM_A);
+        sut.get(FORM_B);
+
+        assertThat(sut.getStatistics().getEvictions()).isEqualTo(1);
+        assertThat(sut.getStatistics().getSize()).isEqualTo(1);
+    }
+}
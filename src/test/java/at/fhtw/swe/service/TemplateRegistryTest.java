@@ -0,0 +1,146 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledForm;
+import at.fhtw.swe.model.RegisteredTemplate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TemplateRegistryTest {
+
+    private static final String FORM_A =
+            "{\"components\":[{\"id\":\"a\",\"type\":\"textfield\",\"validate\":{\"required\":true}}]}";
+    private static final String FORM_B =
+            "{\"components\":[{\"id\":\"b\",\"type\":\"textfield\",\"validate\":{\"pattern\":\"x+\","
+                    + "\"custom\":{\"external\":{\"jsonata\":\"$length(b) > 2\"}}}}]}";
+    private static final String INVALID_PATTERN =
+            "{\"components\":[{\"id\":\"b\",\"type\":\"textfield\",\"validate\":{\"pattern\":\"x(+\"}}]}";
+    private static final String INVALID_JSONATA =
+            "{\"components\":[{\"id\":\"b\",\"type\":\"textfield\",\"validate\":"
+                    + "{\"custom\":{\"external\":{\"jsonata\":\"$length(b) >\"}}}}]}";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<TemplateRegistry> registries = new ArrayList<>();
+    private JsonataEngine jsonataEngine;
+
+    @Before
+    public void setUp() {
+        jsonataEngine = new JsonataEngine("script", 1, 5000, 512, -1, 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        registries.forEach(TemplateRegistry::shutdown);
+    }
+
+    @Test
+    public void registersVersions() {
+        final TemplateRegistry sut = registry(false);
+
+        final RegisteredTemplate first = sut.register("antrag", FORM_A);
+        final RegisteredTemplate second = sut.register("antrag", FORM_B);
+
+        assertThat(first.getVersion()).isEqualTo(1);
+        assertThat(second.getVersion()).isEqualTo(2);
+        assertThat(second.getTemplateHash()).isEqualTo(ContentHash.of(FORM_B));
+        assertThat(sut.get("antrag", 1).getKeys()).containsExactly("a");
+        assertThat(sut.get("antrag", null).getKeys()).containsExactly("b");
+        assertThat(sut.list("antrag")).extracting(RegisteredTemplate::getVersion).containsExactly(1, 2);
+        assertThat(sut.size()).isEqualTo(2);
+        assertThatThrownBy(() -> sut.get("antrag", 3))
+                .isInstanceOf(TemplateException.class)
+                .extracting("reason").containsExactly(TemplateException.Reason.NOT_FOUND);
+    }
+
+    @Test
+    public void rejectsInvalidTemplates() {
+        final TemplateRegistry sut = registry(false);
+
+        for (String invalid : new String[]{INVALID_PATTERN, INVALID_JSONATA, "[]", "{"}) {
+            assertThatThrownBy(() -> sut.register("antrag", invalid))
+                    .isInstanceOf(TemplateException.class)
+                    .extracting("reason").containsExactly(TemplateException.Reason.INVALID);
+        }
+        assertThatThrownBy(() -> sut.register("../antrag", FORM_A))
+                .isInstanceOf(TemplateException.class)
+                .extracting("reason").containsExactly(TemplateException.Reason.INVALID);
+        assertThat(sut.size()).isZero();
+    }
+
+    @Test
+    public void survivesRestarts() {
+        registry(false).register("antrag", FORM_A);
+        registry(false).register("antrag", FORM_B);
+
+        final TemplateRegistry restarted = registry(false);
+
+        assertThat(restarted.list()).extracting(RegisteredTemplate::getVersion).containsExactly(1, 2);
+        assertThat(restarted.get("antrag", 2).getHash()).isEqualTo(ContentHash.of(FORM_B));
+    }
+
+    @Test
+    public void deletesVersions() throws Exception {
+        final TemplateRegistry sut = registry(false);
+        sut.register("antrag", FORM_A);
+        sut.register("antrag", FORM_B);
+
+        sut.delete("antrag", 1);
+
+        assertThat(sut.list("antrag")).extracting(RegisteredTemplate::getVersion).containsExactly(2);
+        assertThat(Files.exists(folder.getRoot().toPath().resolve("antrag/1.json"))).isFalse();
+
+        sut.delete("antrag", null);
+
+        assertThat(sut.list()).isEmpty();
+        assertThat(registry(false).size()).isZero();
+    }
+
+    @Test
+    public void reloadsChangedFiles() throws Exception {
+        final TemplateRegistry sut = registry(true);
+        final CompiledForm registered = sut.get("antrag", sut.register("antrag", FORM_A).getVersion());
+        final Path directory = folder.getRoot().toPath().resolve("antrag");
+
+        Files.write(directory.resolve("2.json"), FORM_B.getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.newFolder("bescheid").toPath().resolve("1.json"), FORM_A.getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("3.json"), INVALID_PATTERN.getBytes(StandardCharsets.UTF_8));
+
+        awaitSize(sut, 3);
+        assertThat(sut.get("antrag", null).getHash()).isEqualTo(ContentHash.of(FORM_B));
+        assertThat(sut.get("antrag", 1)).isSameAs(registered);
+        assertThat(sut.get("bescheid", 1).getKeys()).containsExactly("a");
+
+        Files.delete(directory.resolve("2.json"));
+
+        awaitSize(sut, 2);
+        assertThat(sut.get("antrag", null)).isSameAs(registered);
+    }
+
+    private TemplateRegistry registry(final boolean watch) {
+        final TemplateRegistry registry = new TemplateRegistry(
+                new PatternCache(16, 100), jsonataEngine, folder.getRoot().getPath(), watch);
+        registry.start();
+        registries.add(registry);
+        return registry;
+    }
+
+    private static void awaitSize(final TemplateRegistry sut, final int size) throws InterruptedException {
+        for (int attempt = 0; attempt < 200 && sut.size() != size; attempt++) {
+            Thread.sleep(50);
+        }
+        assertThat(sut.size()).isEqualTo(size);
+    }
+}
@@ -0,0 +1,90 @@
+package at.fhtw.swe.service;
+
+import at.fhtw.swe.model.CompiledForm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ValidationMetricsTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final TemplateCache templateCache = new TemplateCache(16, Long.MAX_VALUE, new PatternCache(16, 100));
+    private final JsonataEngine jsonataEngine = new JsonataEngine("native", 1, 5000, 16, -1, 0, 0);
+
+    @Test
+    public void recordsRulesValidationsAndViolations() {
+        final MeterRegistry registry = new SimpleMeterRegistry();
+        final Validator sut = new Validator(
+                jsonataEngine, templateCache, new ValidationMetrics(registry, true), false, 0, 64, 256, 0);
+        final CompiledForm form = templateCache.get(resource("/forms/gridForm.json"));
+
+        final int errors = sut.validateForm(form, resource("/forms/gridData.json"), false).size();
+
+        assertThat(registry.get("validator.parse").timer().count()).isEqualTo(1);
+        assertThat(registry.get("validator.validation").tag("template", form.getHash()).tag("mode", "external")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("validator.rule").tag("rule", ValidationMetrics.JSONATA).timer().count())
+                .isPositive();
+        assertThat(registry.get("validator.violations").counters().stream().mapToDouble(Counter::count).sum())
+                .isEqualTo(errors);
+    }
+
+    @Test
+    public void recordsNothingWhenDisabled() {
+        final MeterRegistry registry = new SimpleMeterRegistry();
+        final Validator sut = new Validator(
+                jsonataEngine, templateCache, new ValidationMetrics(registry, false), false, 0, 64, 256, 0);
+
+        sut.validateForm(resource("/forms/gridForm.json"), resource("/forms/gridData.json"), false);
+
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    public void recordsNothingDuringTheWarmUp() throws IOException, InterruptedException {
+        final MeterRegistry registry = new SimpleMeterRegistry();
+        final Validator validator = new Validator(
+                jsonataEngine, templateCache, new ValidationMetrics(registry, true), false, 0, 64, 256, 0);
+        final Path location = folder.getRoot().toPath();
+        Files.write(location.resolve("grid.form.json"),
+                resource("/forms/gridForm.json").getBytes(StandardCharsets.UTF_8));
+        Files.write(location.resolve("grid.data.json"),
+                resource("/forms/gridData.json").getBytes(StandardCharsets.UTF_8));
+        final WarmUp warmUp = new WarmUp(validator, jsonataEngine, null, true, location.toUri().toString(), 2, 10000,
+                false);
+
+        warmUp.start();
+        for (int attempt = 0; attempt < 100 && !warmUp.isReady(); attempt++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(warmUp.isReady()).isTrue();
+        assertThat(templateCache.getStatistics().getMisses()).isEqualTo(1);
+        assertThat(registry.get("validator.parse").timer().count()).isZero();
+        assertThat(registry.find("validator.validation").timers()).isEmpty();
+        assertThat(registry.find("validator.rule").timers()).isEmpty();
+    }
+
+    private static String resource(final String name) {
+        try (InputStream stream = ValidationMetricsTest.class.getResourceAsStream(name);
+             Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}